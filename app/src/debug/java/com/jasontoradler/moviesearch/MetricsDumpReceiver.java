@@ -0,0 +1,73 @@
+package com.jasontoradler.moviesearch;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.jasontoradler.moviesearch.network.PerfMetrics;
+import com.jasontoradler.moviesearch.network.SearchTool;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Write the performance metrics to a file when triggered over adb:
+ * <pre>
+ * adb shell am broadcast -a com.jasontoradler.moviesearch.DUMP_METRICS [--ez reset true]
+ * adb pull /sdcard/Android/data/com.jasontoradler.moviesearch/files/metrics.txt
+ * </pre>
+ * The receiver requires the DUMP permission, which the shell has but other apps do not. It is
+ * only part of debug builds.
+ */
+public class MetricsDumpReceiver extends BroadcastReceiver {
+
+    public static final String EXTRA_RESET = "reset";
+
+    private static final String TAG = "MetricsDumpReceiver";
+    private static final String FILE_NAME = "metrics.txt";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final String metrics = SearchTool.instance(context).dumpMetrics();
+        Log.d(TAG, "metrics:\n" + metrics);
+        if (intent.getBooleanExtra(EXTRA_RESET, false)) {
+            PerfMetrics.instance().reset();
+        }
+
+        final File dir = context.getExternalFilesDir(null) != null
+                ? context.getExternalFilesDir(null)
+                : context.getFilesDir();
+        final File file = new File(dir, FILE_NAME);
+        final PendingResult result = goAsync();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write(file, metrics);
+                result.finish();
+            }
+        }, TAG).start();
+    }
+
+    private static void write(File file, String metrics) {
+        Writer writer = null;
+        try {
+            writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+            writer.write(metrics);
+            Log.d(TAG, "metrics written to " + file);
+        } catch (IOException e) {
+            Log.e(TAG, "error writing " + file + ": " + e);
+        } finally {
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (IOException e) {
+                    Log.e(TAG, "error closing " + file + ": " + e);
+                }
+            }
+        }
+    }
+}
@@ -35,6 +35,7 @@ public class DetailsActivity extends Activity implements SearchTool.IdSearchList
     private NetworkImageView mNetworkImageView;
     private TextView mTitle;
     private ProgressBar mProgressBar;
+    private String mImdbId;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,16 +47,25 @@ public class DetailsActivity extends Activity implements SearchTool.IdSearchList
         mTitle = (TextView) findViewById(R.id.title);
         mProgressBar = (ProgressBar) findViewById(R.id.progress);
 
-        final String id = getIntent().getStringExtra(EXTRA_SEARCH_ITEM_ID);
-        Log.d(TAG, "imdbId: " + id);
-        if (!TextUtils.isEmpty(id)) {
+        mImdbId = getIntent().getStringExtra(EXTRA_SEARCH_ITEM_ID);
+        Log.d(TAG, "imdbId: " + mImdbId);
+        if (!TextUtils.isEmpty(mImdbId)) {
             final SearchTool searchTool = SearchTool.instance(this);
-            searchTool.queueSearchById(this, id, this);
+            searchTool.queueSearchById(this, mImdbId, this);
         } else {
             Log.e(TAG, "missing extra: search id");
         }
     }
 
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (!TextUtils.isEmpty(mImdbId)) {
+            // keep the lookup going across a configuration change, the new instance re-attaches
+            SearchTool.instance(this).cancelSearchById(mImdbId, this, isFinishing());
+        }
+    }
+
     @Override
     public void onError(VolleyError error) {
         Log.e(TAG, "onError: " + error);
@@ -77,7 +87,7 @@ public class DetailsActivity extends Activity implements SearchTool.IdSearchList
             mDetailsList.setLayoutManager(layoutManager);
             mDetailsList.addItemDecoration(new DividerItemDecoration(mDetailsList.getContext(),
                     layoutManager.getOrientation()));
-            mDetailsList.setAdapter(new DetailsAdapter(movieDetails.data));
+            mDetailsList.setAdapter(new DetailsAdapter(movieDetails.getDisplayData()));
             mDetailsList.setVisibility(View.VISIBLE);
 
             mProgressBar.setVisibility(View.GONE);
@@ -4,27 +4,58 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
 import android.view.inputmethod.EditorInfo;
 import android.view.inputmethod.InputMethodManager;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
 import android.widget.EditText;
+import android.widget.ListView;
 import android.widget.TextView;
 
+import com.android.volley.VolleyError;
+import com.jasontoradler.moviesearch.data.SearchItem;
 import com.jasontoradler.moviesearch.network.SearchTool;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Launcher activity which allows user to enter a keyword to search the catalog and display any
- * results via {@link SearchResultsActivity}.
+ * results via {@link SearchResultsActivity}. Titles matching the keyword are suggested as the user
+ * types, once typing pauses.
  */
-public class MainActivity extends Activity {
+public class MainActivity extends Activity implements SearchTool.SuggestionListener {
+
+    private static final String TAG = "MainActivity";
+    private static final long SUGGEST_DELAY_MS = 300;
+    private static final int MIN_SUGGEST_LENGTH = 2;
+
+    private final Handler mHandler = new Handler();
+    private final List<SearchItem> mSuggestions = new ArrayList<>();
+    private final Runnable mSuggestRunnable = new Runnable() {
+        @Override
+        public void run() {
+            suggest();
+        }
+    };
 
     private EditText mSearchBox;
+    private ListView mSuggestionList;
+    private ArrayAdapter<String> mSuggestionAdapter;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_search);
+        if (savedInstanceState == null) {
+            SearchTool.instance(this).warmUp();
+        }
 
         mSearchBox = (EditText) findViewById(R.id.searchBox);
         mSearchBox.setOnEditorActionListener(new TextView.OnEditorActionListener() {
@@ -38,14 +69,98 @@ public class MainActivity extends Activity {
                 return handled;
             }
         });
+        mSearchBox.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                // wait for typing to pause before asking for suggestions
+                SearchTool.instance(MainActivity.this).noteSuggestionKeystroke();
+                mHandler.removeCallbacks(mSuggestRunnable);
+                mHandler.postDelayed(mSuggestRunnable, SUGGEST_DELAY_MS);
+            }
+        });
+
+        mSuggestionAdapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1);
+        mSuggestionList = (ListView) findViewById(R.id.suggestionList);
+        mSuggestionList.setAdapter(mSuggestionAdapter);
+        mSuggestionList.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+            @Override
+            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
+                if (position < mSuggestions.size()) {
+                    Intent intent = new Intent(MainActivity.this, DetailsActivity.class);
+                    intent.putExtra(DetailsActivity.EXTRA_SEARCH_ITEM_ID,
+                            mSuggestions.get(position).imdbID);
+                    startActivity(intent);
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        Log.d(TAG, "suggestions: " + SearchTool.instance(this).getSuggestionStats());
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mSuggestRunnable);
+        SearchTool.instance(this).cancelSuggestions();
+    }
+
+    private void suggest() {
+        final String keyword = mSearchBox.getText().toString().trim();
+        final SearchTool searchTool = SearchTool.instance(this);
+        if (keyword.length() < MIN_SUGGEST_LENGTH) {
+            searchTool.cancelSuggestions();
+            showSuggestions(new ArrayList<SearchItem>());
+        } else {
+            searchTool.suggestTitles(keyword, this);
+        }
+    }
+
+    @Override
+    public void onSuggestions(String keyword, List<SearchItem> suggestions) {
+        if (keyword.equals(mSearchBox.getText().toString().trim())) {
+            showSuggestions(suggestions);
+        }
+    }
+
+    @Override
+    public void onError(VolleyError error) {
+        // keep showing whatever was suggested so far
+        Log.d(TAG, "suggestion error: " + error);
+    }
+
+    private void showSuggestions(List<SearchItem> suggestions) {
+        mSuggestions.clear();
+        mSuggestions.addAll(suggestions);
+        mSuggestionAdapter.setNotifyOnChange(false);
+        mSuggestionAdapter.clear();
+        for (SearchItem item : suggestions) {
+            mSuggestionAdapter.add(getString(R.string.suggestion, item.Title, item.Year));
+        }
+        mSuggestionAdapter.notifyDataSetChanged();
+        mSuggestionList.setVisibility(suggestions.isEmpty() ? View.GONE : View.VISIBLE);
     }
 
     private void search() {
         final String keyword = mSearchBox.getText().toString();
         if (!keyword.isEmpty()) {
-            InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+            InputMethodManager imm =
+                    (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
             imm.hideSoftInputFromWindow(mSearchBox.getWindowToken(), 0);
 
+            // a suggestion request still in flight for the keyword is shared with the search
+            mHandler.removeCallbacks(mSuggestRunnable);
             SearchTool.instance(this).clearResults();
 
             Intent intent = new Intent(this, SearchResultsActivity.class);
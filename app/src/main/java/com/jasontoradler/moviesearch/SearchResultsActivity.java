@@ -4,6 +4,10 @@ import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.DividerItemDecoration;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
@@ -12,18 +16,31 @@ import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.AdapterView;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
+import android.widget.Spinner;
 import android.widget.TextView;
 
 import com.android.volley.VolleyError;
 import com.android.volley.toolbox.NetworkImageView;
+import com.jasontoradler.moviesearch.data.ResultsModel;
+import com.jasontoradler.moviesearch.data.ResultsQuery;
+import com.jasontoradler.moviesearch.data.ResultsView;
 import com.jasontoradler.moviesearch.data.SearchItem;
+import com.jasontoradler.moviesearch.data.SearchItemStore;
+import com.jasontoradler.moviesearch.network.PerfMetrics;
 import com.jasontoradler.moviesearch.network.SearchTool;
 import com.jasontoradler.moviesearch.ui.EndlessScrollListener;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Query the catalog based on a mKeyword passed in from {@link MainActivity}. Display the list of
@@ -37,17 +54,51 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
     private static final String KEY_PAGE = "page";
     private static final String KEY_IS_INITIAL_SEARCH_DONE = "isInitialSearchDone";
     private static final String KEY_KEYWORD = "keyword";
+    private static final String KEY_SORT = "sort";
+    private static final String KEY_TYPE = "type";
+    private static final String KEY_YEARS = "years";
     private static final int PAGE_SIZE = 10;
     private static final int VISIBLE_THRESHOLD = PAGE_SIZE * 3;
+    private static final int DETAILS_PREFETCH_LOOKAHEAD = 3;
+    /**
+     * Rows kept for reuse; a fast fling detaches up to a screenful of rows at once, more than the
+     * default of 5.
+     */
+    private static final int RECYCLED_ROWS = 12;
+    /**
+     * First and last year of each entry of the year spinner.
+     */
+    private static final int[][] YEAR_RANGES = {
+            {ResultsQuery.ANY_YEAR, ResultsQuery.ANY_YEAR},
+            {2010, ResultsQuery.ANY_YEAR},
+            {2000, 2009},
+            {1990, 1999},
+            {ResultsQuery.ANY_YEAR, 1989},
+    };
 
     private ProgressBar mProgressBar;
     private TextView mSearchResultsTitle;
     private RecyclerView mRecyclerView;
     private TextView mNoResultsText;
+    private Spinner mSortSpinner;
+    private Spinner mTypeSpinner;
+    private Spinner mYearSpinner;
     private String mKeyword;
     private int mPage = 1;
     private boolean mIsInitialSearchDone;
     private ResultsAdapter mResultsAdapter;
+    private LinearLayoutManager mLayoutManager;
+    private EndlessScrollListener mScrollListener;
+    private final ResultsModel.Listener mResultsListener = new ResultsModel.Listener() {
+        @Override
+        public void onResultsChanged(ResultsModel.Snapshot snapshot) {
+            mResultsAdapter.update();
+        }
+    };
+    /**
+     * When the initial search was started, until its first results are shown.
+     */
+    private long mSearchStartedAt;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -58,34 +109,53 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
         mRecyclerView = (RecyclerView) findViewById(R.id.resultsListView);
         mNoResultsText = (TextView) findViewById(R.id.noResultsText);
         mProgressBar = (ProgressBar) findViewById(R.id.resultsProgressBar);
+        mSortSpinner = (Spinner) findViewById(R.id.sortSpinner);
+        mTypeSpinner = (Spinner) findViewById(R.id.typeSpinner);
+        mYearSpinner = (Spinner) findViewById(R.id.yearSpinner);
 
         if (savedInstanceState != null) {
             mPage = savedInstanceState.getInt(KEY_PAGE, 1);
             mIsInitialSearchDone = savedInstanceState.getBoolean(KEY_IS_INITIAL_SEARCH_DONE);
             mKeyword = savedInstanceState.getString(KEY_KEYWORD);
+            mSortSpinner.setSelection(savedInstanceState.getInt(KEY_SORT));
+            mTypeSpinner.setSelection(savedInstanceState.getInt(KEY_TYPE));
+            mYearSpinner.setSelection(savedInstanceState.getInt(KEY_YEARS));
         }
 
         LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        // bind the next row in the idle time between frames while flinging
+        layoutManager.setItemPrefetchEnabled(true);
+        mLayoutManager = layoutManager;
         mRecyclerView.setLayoutManager(layoutManager);
+        // the list fills the screen whatever its content, and all rows have the same fixed height
+        mRecyclerView.setHasFixedSize(true);
+        mRecyclerView.getRecycledViewPool().setMaxRecycledViews(0, RECYCLED_ROWS);
         mRecyclerView.addItemDecoration(new DividerItemDecoration(this,
                 layoutManager.getOrientation()));
-        EndlessScrollListener scrollListener = new EndlessScrollListener(layoutManager) {
+        mScrollListener = new EndlessScrollListener(layoutManager) {
             @Override
             public void onLoadMore(int page) {
                 loadMore(page);
             }
         };
-        scrollListener.setVisibleThreshold(VISIBLE_THRESHOLD);
-        scrollListener.setCurrentPage(mPage);
-        mRecyclerView.addOnScrollListener(scrollListener);
+        mScrollListener.setVisibleThreshold(VISIBLE_THRESHOLD);
+        mScrollListener.setCurrentPage(mPage);
+        mRecyclerView.addOnScrollListener(mScrollListener);
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    prefetchVisibleDetails();
+                }
+            }
+        });
         mResultsAdapter = new ResultsAdapter(this, new ResultsAdapterClickListener() {
             @Override
             public void onItemClick(int position) {
-                SearchTool searchTool = SearchTool.instance(SearchResultsActivity.this);
-                SearchItem searchItem = searchTool.getItem(position);
-                if (searchItem != null) {
+                String imdbId = mResultsAdapter.getImdbId(position);
+                if (imdbId != null) {
                     Intent intent = new Intent(SearchResultsActivity.this, DetailsActivity.class);
-                    intent.putExtra(DetailsActivity.EXTRA_SEARCH_ITEM_ID, searchItem.imdbID);
+                    intent.putExtra(DetailsActivity.EXTRA_SEARCH_ITEM_ID, imdbId);
                     startActivity(intent);
                 }
             }
@@ -93,19 +163,41 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
             @Override
             public void onHeartClick(int position) {
                 Log.d(TAG, "onHeartClick: " + position);
-                SearchTool searchTool = SearchTool.instance(SearchResultsActivity.this);
-                SearchItem searchItem = searchTool.getItem(position);
-                if (searchItem != null) {
-                    searchItem.isFavorite ^= true;
-                    Log.d(TAG, "set '" + searchItem.Title + "' to favorite: " + searchItem.isFavorite);
-                    mResultsAdapter.notifyDataSetChanged();
-                }
+                mResultsAdapter.toggleFavorite(position);
             }
         });
+        // the saved scroll position refers to the rows of the query, so set it before any rows
+        mResultsAdapter.setQuery(getQuery());
         mRecyclerView.setAdapter(mResultsAdapter);
+        final AdapterView.OnItemSelectedListener queryListener =
+                new AdapterView.OnItemSelectedListener() {
+                    @Override
+                    public void onItemSelected(AdapterView<?> parent, View view, int position,
+                            long id) {
+                        final ResultsQuery query = mResultsAdapter.getQuery();
+                        if (parent == mSortSpinner) {
+                            mResultsAdapter.setQuery(
+                                    query.withSort(ResultsQuery.Sort.values()[position]));
+                        } else if (parent == mTypeSpinner) {
+                            mResultsAdapter.setQuery(query.withType(typeAt(position)));
+                        } else {
+                            final int[] years = YEAR_RANGES[position];
+                            mResultsAdapter.setQuery(query.withYears(years[0], years[1]));
+                        }
+                    }
+
+                    @Override
+                    public void onNothingSelected(AdapterView<?> parent) {
+                    }
+                };
+        mSortSpinner.setOnItemSelectedListener(queryListener);
+        mTypeSpinner.setOnItemSelectedListener(queryListener);
+        mYearSpinner.setOnItemSelectedListener(queryListener);
+        SearchTool.instance(this).addResultsListener(mResultsListener);
 
         if (!mIsInitialSearchDone) {
             mIsInitialSearchDone = true;
+            mSearchStartedAt = SystemClock.elapsedRealtime();
             mPage = 1;
             mKeyword = getIntent().getExtras().getString(EXTRA_KEYWORD);
             if (!TextUtils.isEmpty(mKeyword)) {
@@ -114,8 +206,49 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
                 Log.e(TAG, "ERROR: missing keyword extra!");
                 showNoResults();
             }
+        } else if (SearchTool.instance(this).getResults().size() == 0
+                && !TextUtils.isEmpty(mKeyword)) {
+            // the process was killed since the instance state was saved
+            SearchTool.instance(this).restoreSession(mKeyword, new SearchTool.SessionListener() {
+                @Override
+                public void onSessionRestored(int position, int offset) {
+                    showResults();
+                    mLayoutManager.scrollToPositionWithOffset(position, offset);
+                }
+
+                @Override
+                public void onSessionUnavailable() {
+                    if (!isFinishing()) {
+                        SearchTool.instance(SearchResultsActivity.this).queueSearchByTitle(
+                                SearchResultsActivity.this, mKeyword, mPage,
+                                SearchResultsActivity.this);
+                    }
+                }
+            });
         } else {
             showResults();
+            if (!TextUtils.isEmpty(mKeyword)) {
+                // re-attach to the pages still being prefetched; loaded pages are not re-requested
+                SearchTool.instance(this).queueSearchByTitle(this, mKeyword, mPage, this);
+            }
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        SearchTool.instance(this).getFavorites().flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // keep prefetching across a configuration change, the new instance re-attaches
+        final SearchTool searchTool = SearchTool.instance(this);
+        searchTool.removeResultsListener(mResultsListener);
+        searchTool.removeTitleSearchListener(this, isFinishing());
+        if (isFinishing()) {
+            searchTool.prefetchDetails(Collections.<String>emptyList());
         }
     }
 
@@ -125,6 +258,36 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
         outState.putInt(KEY_PAGE, mPage);
         outState.putBoolean(KEY_IS_INITIAL_SEARCH_DONE, mIsInitialSearchDone);
         outState.putString(KEY_KEYWORD, mKeyword);
+        outState.putInt(KEY_SORT, mSortSpinner.getSelectedItemPosition());
+        outState.putInt(KEY_TYPE, mTypeSpinner.getSelectedItemPosition());
+        outState.putInt(KEY_YEARS, mYearSpinner.getSelectedItemPosition());
+
+        // the process may be killed from here on; keep the results for when it is recreated
+        final int position = mLayoutManager.findFirstVisibleItemPosition();
+        if (position != RecyclerView.NO_POSITION) {
+            final View row = mLayoutManager.findViewByPosition(position);
+            final int offset = row != null ? row.getTop() - mRecyclerView.getPaddingTop() : 0;
+            SearchTool.instance(this).saveSession(mKeyword, position, offset);
+        }
+    }
+
+    /**
+     * @return the query chosen with the spinners above the list
+     */
+    private ResultsQuery getQuery() {
+        final int[] years = YEAR_RANGES[mYearSpinner.getSelectedItemPosition()];
+        return new ResultsQuery(
+                ResultsQuery.Sort.values()[mSortSpinner.getSelectedItemPosition()],
+                typeAt(mTypeSpinner.getSelectedItemPosition()),
+                years[0],
+                years[1]);
+    }
+
+    /**
+     * @return type chosen at the position of the type spinner, or null for any type
+     */
+    private static SearchItemStore.Type typeAt(int position) {
+        return position > 0 ? SearchItemStore.Type.values()[position - 1] : null;
     }
 
     private void showNoResults() {
@@ -141,17 +304,55 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
         final SearchTool searchTool = SearchTool.instance(this);
         final int totalItems = searchTool.getTotalItems();
         if (totalItems > 0) {
+            if (mSearchStartedAt != 0) {
+                PerfMetrics.instance().timeToFirstResultMs.record(
+                        SystemClock.elapsedRealtime() - mSearchStartedAt);
+                mSearchStartedAt = 0;
+            }
             Log.d(TAG, "showResults: totalItems=" + totalItems);
-            mSearchResultsTitle.setText(getString(R.string.searchResultsTitle, mKeyword, totalItems));
+            mSearchResultsTitle.setText(
+                    getString(R.string.searchResultsTitle, mKeyword, totalItems));
             mProgressBar.setVisibility(View.INVISIBLE);
             mRecyclerView.setVisibility(View.VISIBLE);
             mNoResultsText.setVisibility(View.INVISIBLE);
-            mResultsAdapter.notifyDataSetChanged();
+            mResultsAdapter.update();
+            // wait for the new items to be laid out before looking at what is visible
+            mRecyclerView.post(new Runnable() {
+                @Override
+                public void run() {
+                    prefetchVisibleDetails();
+                }
+            });
         } else {
             showNoResults();
         }
     }
 
+    /**
+     * Prefetch the details of the items on screen and just below, so that tapping one of them
+     * shows its details without waiting for the network. Items scrolled away from are dropped
+     * from the prefetch list.
+     */
+    private void prefetchVisibleDetails() {
+        if (mRecyclerView.getScrollState() != RecyclerView.SCROLL_STATE_IDLE) {
+            return;
+        }
+        final int first = mLayoutManager.findFirstVisibleItemPosition();
+        final int last = mLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION || last == RecyclerView.NO_POSITION) {
+            return;
+        }
+        final SearchTool searchTool = SearchTool.instance(this);
+        final List<String> imdbIds = new ArrayList<>();
+        for (int position = first; position <= last + DETAILS_PREFETCH_LOOKAHEAD; position++) {
+            final String imdbId = mResultsAdapter.getImdbId(position);
+            if (imdbId != null) {
+                imdbIds.add(imdbId);
+            }
+        }
+        searchTool.prefetchDetails(imdbIds);
+    }
+
     private void loadMore(final int page) {
         Log.d(TAG, "loadMore: page=" + page);
         mPage = page;
@@ -163,8 +364,10 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
     }
 
     @Override
-    public void onError(VolleyError error) {
-        Log.d(TAG, "volley error: " + error);
+    public void onError(int page, VolleyError error) {
+        Log.d(TAG, "volley error: page=" + page + ", " + error);
+        // SearchTool retries transient failures a few times by itself; scrolling retries sooner
+        mScrollListener.onLoadFailed(page);
         showResults();
     }
 
@@ -172,6 +375,14 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
     public void onSuccess() {
         Log.d(TAG, "volley success");
         showResults();
+        // the page may have added no rows that pass the query, which only shows once the adapter
+        // has caught up with it
+        mResultsAdapter.runWhenUpdated(new Runnable() {
+            @Override
+            public void run() {
+                mScrollListener.onLoadFinished();
+            }
+        });
     }
 
     /**
@@ -183,16 +394,205 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
         void onHeartClick(int position);
     }
 
+    /**
+     * Adapter over a {@link ResultsView} of the search results, i.e. those passing the query chosen
+     * above the list, in its order. Pages appended to the results are merged into the view and
+     * announced as the ranges they were inserted at; when the results are replaced or the filter
+     * changes, the view is rebuilt and the changes are computed with DiffUtil on a background
+     * thread, straight from the immutable snapshots, and dispatched once done. Rows whose heart or
+     * number changed are rebound partially through a payload.
+     */
     private static class ResultsAdapter extends RecyclerView.Adapter<ResultsAdapter.ViewHolder> {
 
+        private static final Object PAYLOAD_FAVORITE = new Object();
+        private static final Object PAYLOAD_POSITION = new Object();
+        private static final ExecutorService DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
         private final WeakReference<Context> mContext;
         private final ResultsAdapterClickListener mListener;
+        private final Handler mHandler = new Handler();
+        private ResultsView mView = ResultsView.EMPTY;
+        private ResultsQuery mQuery = ResultsQuery.ALL;
+        private boolean mIsDiffing;
+        private boolean mIsUpdatePending;
+        private final List<Runnable> mOnUpdated = new ArrayList<>();
+        /**
+         * Lowest position at which rows were inserted, removed or moved by the last update; the
+         * rows from there on may show a different number than before.
+         */
+        private int mFirstShifted;
+        private final ListUpdateCallback mUpdateCallback = new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                mFirstShifted = Math.min(mFirstShifted, position);
+                notifyItemRangeInserted(position, count);
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                mFirstShifted = Math.min(mFirstShifted, position);
+                notifyItemRangeRemoved(position, count);
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                mFirstShifted = Math.min(mFirstShifted, Math.min(fromPosition, toPosition));
+                notifyItemMoved(fromPosition, toPosition);
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                notifyItemRangeChanged(position, count, payload);
+            }
+        };
 
         ResultsAdapter(Context context, ResultsAdapterClickListener listener) {
             mContext = new WeakReference<>(context);
             mListener = listener;
         }
 
+        /**
+         * Show the results that pass the query, in its order.
+         */
+        void setQuery(ResultsQuery query) {
+            mQuery = query;
+            update();
+        }
+
+        ResultsQuery getQuery() {
+            return mQuery;
+        }
+
+        /**
+         * Catch up with the current search results and query.
+         */
+        void update() {
+            if (mIsDiffing) {
+                mIsUpdatePending = true;
+                return;
+            }
+            final ResultsView oldView = mView;
+            final ResultsModel.Snapshot newSnapshot =
+                    SearchTool.instance(mContext.get()).getResults();
+            final ResultsQuery query = mQuery;
+            final boolean isSameQuery = query.equals(oldView.getQuery());
+            if (newSnapshot == oldView.getSnapshot() && isSameQuery) {
+                return;
+            }
+            if (isSameQuery && oldView.canAppend(newSnapshot)) {
+                // the old snapshot is a prefix of the results; only new pages were appended and
+                // hearts flipped
+                final BitSet flipped = oldView.getSnapshot().getFavorites();
+                flipped.xor(newSnapshot.getFavorites());
+                if (!flipped.isEmpty()) {
+                    for (int position = 0; position < oldView.size(); position++) {
+                        if (flipped.get(oldView.getPosition(position))) {
+                            notifyItemChanged(position, PAYLOAD_FAVORITE);
+                        }
+                    }
+                }
+                mFirstShifted = Integer.MAX_VALUE;
+                mView = oldView.append(newSnapshot, mUpdateCallback);
+                notifyShiftedPositions();
+                return;
+            }
+            if (oldView.size() == 0 || newSnapshot.size() == 0) {
+                // nothing to diff; at most the first page or a restored session to sort
+                mView = ResultsView.of(newSnapshot, query);
+                notifyItemRangeRemoved(0, oldView.size());
+                notifyItemRangeInserted(0, mView.size());
+                return;
+            }
+
+            mIsDiffing = true;
+            DIFF_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // filtering and sorting all results takes too long for the main thread
+                    final ResultsView newView = ResultsView.of(newSnapshot, query);
+                    // a new order moves nearly every row, which is not worth diffing
+                    final DiffUtil.DiffResult result = query.sort != oldView.getQuery().sort
+                            ? null
+                            : DiffUtil.calculateDiff(new KeysCallback(
+                                    new ItemKeys(oldView), new ItemKeys(newView)), false);
+                    mHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            mIsDiffing = false;
+                            mView = newView;
+                            if (result == null) {
+                                notifyDataSetChanged();
+                            } else {
+                                mFirstShifted = Integer.MAX_VALUE;
+                                result.dispatchUpdatesTo(mUpdateCallback);
+                                notifyShiftedPositions();
+                            }
+                            if (mIsUpdatePending) {
+                                mIsUpdatePending = false;
+                                update();
+                            }
+                            if (!mIsDiffing) {
+                                final List<Runnable> actions = new ArrayList<>(mOnUpdated);
+                                mOnUpdated.clear();
+                                for (Runnable action : actions) {
+                                    action.run();
+                                }
+                            }
+                        }
+                    });
+                }
+            });
+        }
+
+        /**
+         * Run the action once the rows show the results as of the last {@link #update()}: right
+         * away, or after the diff being computed, and any update queued behind it, is dispatched.
+         */
+        void runWhenUpdated(Runnable action) {
+            if (mIsDiffing) {
+                mOnUpdated.add(action);
+            } else {
+                action.run();
+            }
+        }
+
+        /**
+         * Rebind the number of the rows that merely shifted, which still show their old one; the
+         * rows before the first change keep theirs.
+         */
+        private void notifyShiftedPositions() {
+            if (mFirstShifted < mView.size()) {
+                notifyItemRangeChanged(mFirstShifted, mView.size() - mFirstShifted,
+                        PAYLOAD_POSITION);
+            }
+        }
+
+        /**
+         * @return imdbID of the item displayed at the position, or null if there is none
+         */
+        String getImdbId(int position) {
+            return position >= 0 && position < mView.size()
+                    ? mView.getSnapshot().getImdbId(mView.getPosition(position))
+                    : null;
+        }
+
+        /**
+         * Flip the favorite state of the item displayed at the position. Its heart is rebound by
+         * the {@link #update()} that follows the change of the results.
+         */
+        void toggleFavorite(int position) {
+            final SearchTool searchTool = SearchTool.instance(mContext.get());
+            final ResultsModel.Snapshot snapshot = mView.getSnapshot();
+            if (position < 0 || position >= mView.size()
+                    || snapshot.getGeneration() != searchTool.getResults().getGeneration()) {
+                // the results are being replaced
+                return;
+            }
+            boolean isFavorite = searchTool.toggleFavorite(mView.getPosition(position));
+            Log.d(TAG, "set " + position + " to favorite: " + isFavorite);
+            update();
+        }
+
         @Override
         public ViewHolder onCreateViewHolder(ViewGroup parent, int viewType) {
             View view = LayoutInflater.from(parent.getContext()).inflate(
@@ -200,23 +600,100 @@ public class SearchResultsActivity extends Activity implements SearchTool.TitleS
             return new ViewHolder(view, mListener);
         }
 
+        @Override
+        public void onBindViewHolder(ViewHolder holder, int position, List<Object> payloads) {
+            if (payloads.isEmpty()) {
+                onBindViewHolder(holder, position);
+                return;
+            }
+            for (Object payload : payloads) {
+                if (payload == PAYLOAD_FAVORITE) {
+                    bindHeart(holder, position);
+                } else if (payload == PAYLOAD_POSITION) {
+                    holder.position.setText(String.valueOf(position + 1));
+                }
+            }
+        }
+
         @Override
         public void onBindViewHolder(ViewHolder holder, int position) {
             SearchTool searchTool = SearchTool.instance(mContext.get());
-            SearchItem item = searchTool.getItem(position);
-            if (item != null) {
-                holder.title.setText(item.Title);
-                holder.position.setText(String.valueOf(position + 1));
-                holder.year.setText(item.Year);
-                holder.type.setText(item.Type);
-                holder.image.setImageUrl(item.Poster, searchTool.getImageLoader());
-                holder.heart.setImageResource(item.isFavorite ? R.mipmap.heart_full : R.mipmap.heart_empty);
-            }
+            // bind straight from the snapshot rather than materializing a SearchItem per row
+            ResultsModel.Snapshot store = mView.getSnapshot();
+            int item = mView.getPosition(position);
+            holder.title.setText(store.getTitle(item));
+            holder.position.setText(String.valueOf(position + 1));
+            holder.year.setText(store.getYear(item));
+            holder.type.setText(store.getTypeText(item));
+            holder.image.setImageUrl(store.getPoster(item), searchTool.getImageLoader());
+            bindHeart(holder, position);
+        }
+
+        private void bindHeart(ViewHolder holder, int position) {
+            final boolean isFavorite =
+                    mView.getSnapshot().isFavorite(mView.getPosition(position));
+            holder.heart.setImageResource(isFavorite ? R.mipmap.heart_full : R.mipmap.heart_empty);
         }
 
         @Override
         public int getItemCount() {
-            return SearchTool.instance(mContext.get()).getSearchItems().size();
+            return mView.size();
+        }
+
+        /**
+         * The values of a snapshot that decide whether a row is the same item and whether it must
+         * be rebound.
+         */
+        private static final class ItemKeys {
+            final String[] ids;
+            final int[] contentHashes;
+
+            ItemKeys(ResultsView view) {
+                final ResultsModel.Snapshot store = view.getSnapshot();
+                final int size = view.size();
+                ids = new String[size];
+                contentHashes = new int[size];
+                for (int i = 0; i < size; i++) {
+                    final int item = view.getPosition(i);
+                    ids[i] = store.getImdbId(item);
+                    contentHashes[i] = Arrays.hashCode(new Object[]{
+                            store.getTitle(item),
+                            store.getYear(item),
+                            store.getTypeText(item),
+                            store.getPoster(item),
+                            store.isFavorite(item)});
+                }
+            }
+        }
+
+        private static final class KeysCallback extends DiffUtil.Callback {
+            private final ItemKeys mOld;
+            private final ItemKeys mNew;
+
+            KeysCallback(ItemKeys oldKeys, ItemKeys newKeys) {
+                mOld = oldKeys;
+                mNew = newKeys;
+            }
+
+            @Override
+            public int getOldListSize() {
+                return mOld.ids.length;
+            }
+
+            @Override
+            public int getNewListSize() {
+                return mNew.ids.length;
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return TextUtils.equals(mOld.ids[oldItemPosition], mNew.ids[newItemPosition]);
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return mOld.contentHashes[oldItemPosition] == mNew.contentHashes[newItemPosition];
+            }
         }
 
         static class ViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener {
@@ -0,0 +1,306 @@
+package com.jasontoradler.moviesearch.data;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+/**
+ * The imdbIDs the user marked as favorite. Lookups and toggles only touch an in-memory set, so
+ * they are cheap enough for binding list items and never wait for the disk. Toggles are collected
+ * and written behind, in batches, to an append-only log; toggling the same title several times
+ * before a batch is written results in a single record. Once the log holds many more records than
+ * there are favorites, it is rewritten with just the current favorites.
+ * <p>
+ * Not thread-safe; must only be used from the main thread. The disk I/O runs on the executor.
+ */
+public final class FavoritesStore {
+
+    private static final String TAG = "FavoritesStore";
+    private static final long FLUSH_DELAY_MS = 1000;
+    /**
+     * Superseded records tolerated in the log before it is compacted.
+     */
+    private static final int COMPACT_SLACK = 64;
+    private static final byte OP_REMOVE = 0;
+    private static final byte OP_ADD = 1;
+
+    private final File mFile;
+    private final Executor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final LoadListener mLoadListener;
+    private final Set<String> mFavorites = new HashSet<>();
+    /**
+     * Latest state of each title toggled since the last batch was written.
+     */
+    private final Map<String, Boolean> mPending = new LinkedHashMap<>();
+    /**
+     * Latest state of each title toggled before the log was loaded, to be applied on top of it.
+     */
+    private final Map<String, Boolean> mToggledBeforeLoad = new LinkedHashMap<>();
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private boolean mIsLoaded;
+    private int mRecordCount;
+
+    public FavoritesStore(File file, Executor executor, LoadListener loadListener) {
+        mFile = file;
+        mExecutor = executor;
+        mLoadListener = loadListener;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return mIsLoaded;
+    }
+
+    public boolean contains(String imdbId) {
+        return mFavorites.contains(imdbId);
+    }
+
+    public int size() {
+        return mFavorites.size();
+    }
+
+    /**
+     * Flip the favorite state of the title; it is written to disk shortly after.
+     *
+     * @return the new state
+     */
+    public boolean toggle(String imdbId) {
+        if (imdbId == null) {
+            return false;
+        }
+        final boolean isFavorite = !mFavorites.contains(imdbId);
+        set(imdbId, isFavorite);
+        return isFavorite;
+    }
+
+    public void set(String imdbId, boolean isFavorite) {
+        if (imdbId == null) {
+            return;
+        }
+        if (isFavorite) {
+            mFavorites.add(imdbId);
+        } else {
+            mFavorites.remove(imdbId);
+        }
+        if (!mIsLoaded) {
+            mToggledBeforeLoad.remove(imdbId);
+            mToggledBeforeLoad.put(imdbId, isFavorite);
+        }
+        mPending.remove(imdbId);
+        mPending.put(imdbId, isFavorite);
+        mMainHandler.removeCallbacks(mFlushRunnable);
+        mMainHandler.postDelayed(mFlushRunnable, FLUSH_DELAY_MS);
+    }
+
+    /**
+     * Hand the pending toggles to the executor to be written now, e.g. when the app is leaving
+     * the foreground.
+     */
+    public void flush() {
+        mMainHandler.removeCallbacks(mFlushRunnable);
+        if (mPending.isEmpty()) {
+            return;
+        }
+        if (mIsLoaded && mRecordCount + mPending.size() > 2 * mFavorites.size() + COMPACT_SLACK) {
+            final Set<String> favorites = new HashSet<>(mFavorites);
+            mPending.clear();
+            mRecordCount = favorites.size();
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    compact(favorites);
+                }
+            });
+        } else {
+            final Map<String, Boolean> batch = new LinkedHashMap<>(mPending);
+            mPending.clear();
+            mRecordCount += batch.size();
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(batch);
+                }
+            });
+        }
+    }
+
+    private void load() {
+        final Set<String> favorites = new HashSet<>();
+        int records = 0;
+        if (mFile.exists()) {
+            // length of the records read completely
+            long validLength = 0;
+            DataInputStream in = null;
+            try {
+                in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+                while (true) {
+                    final byte op;
+                    final String imdbId;
+                    try {
+                        op = in.readByte();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    imdbId = in.readUTF();
+                    validLength += 1 + 2 + utfLength(imdbId);
+                    records++;
+                    if (op == OP_ADD) {
+                        favorites.add(imdbId);
+                    } else {
+                        favorites.remove(imdbId);
+                    }
+                }
+            } catch (IOException e) {
+                Log.e(TAG, "error loading favorites: " + e);
+            } finally {
+                close(in);
+            }
+            if (validLength < mFile.length()) {
+                // cut off a partially written record, so that it loses only itself rather than
+                // every record appended after it
+                truncate(validLength);
+            }
+        }
+        final int recordCount = records;
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                onLoaded(favorites, recordCount);
+            }
+        });
+    }
+
+    private void onLoaded(Set<String> favorites, int recordCount) {
+        mFavorites.clear();
+        mFavorites.addAll(favorites);
+        for (Map.Entry<String, Boolean> toggle : mToggledBeforeLoad.entrySet()) {
+            if (toggle.getValue()) {
+                mFavorites.add(toggle.getKey());
+            } else {
+                mFavorites.remove(toggle.getKey());
+            }
+        }
+        mToggledBeforeLoad.clear();
+        // batches written before the load are counted already
+        mRecordCount += recordCount;
+        mIsLoaded = true;
+        Log.d(TAG, "loaded " + mFavorites.size() + " favorites from " + recordCount + " records");
+        if (mLoadListener != null) {
+            mLoadListener.onFavoritesLoaded();
+        }
+    }
+
+    private void append(Map<String, Boolean> batch) {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(mFile, true)));
+            for (Map.Entry<String, Boolean> toggle : batch.entrySet()) {
+                writeRecord(out, toggle.getValue() ? OP_ADD : OP_REMOVE, toggle.getKey());
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error writing favorites: " + e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private void compact(Set<String> favorites) {
+        final File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            for (String imdbId : favorites) {
+                writeRecord(out, OP_ADD, imdbId);
+            }
+            out.close();
+            out = null;
+            if (!temp.renameTo(mFile)) {
+                Log.e(TAG, "error replacing favorites log");
+            } else {
+                Log.d(TAG, "compacted favorites log to " + favorites.size() + " records");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error compacting favorites: " + e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private void truncate(long length) {
+        Log.d(TAG, "truncating favorites log from " + mFile.length() + " to " + length + " bytes");
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.getChannel().truncate(length);
+        } catch (IOException e) {
+            Log.e(TAG, "error truncating favorites log: " + e);
+        } finally {
+            close(file);
+        }
+    }
+
+    /**
+     * @return number of bytes {@link DataOutputStream#writeUTF} writes for the string, without
+     * the length in front
+     */
+    private static int utfLength(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : (c <= 0x07ff ? 2 : 3);
+        }
+        return length;
+    }
+
+    private static void writeRecord(DataOutputStream out, byte op, String imdbId)
+            throws IOException {
+        out.writeByte(op);
+        out.writeUTF(imdbId);
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "error closing favorites log: " + e);
+            }
+        }
+    }
+
+    public interface LoadListener {
+        /**
+         * Called on the main thread once the favorites saved earlier are known.
+         */
+        void onFavoritesLoaded();
+    }
+}
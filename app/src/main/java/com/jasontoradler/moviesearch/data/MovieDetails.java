@@ -5,13 +5,16 @@ import android.util.Pair;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
 
- Corresponds to the movie/series details queried by IMDB id. All key-value pairs are added to the
- 'data' list except the "Response", "Poster", and "Title" fields. The non-String values
- are ignored (e.g. the Ratings) for now.
+ Corresponds to the movie/series details queried by IMDB id. All String values are kept as text
+ fields in document order except the "Response", "Poster", and "Title" fields. The numeric ones
+ (Year, Runtime, Metascore, imdbRating, imdbVotes) are also parsed into typed fields, e.g. for
+ sorting, and the Ratings array is kept as a list of {@link Rating}s. The key-value list that the
+ details screen shows is only built when it is first asked for, see {@link #getDisplayData()}.
 
  For example:
 
@@ -29,7 +32,7 @@ import java.util.List;
  "Country": "Germany, USA",
  "Awards": "4 wins & 10 nominations.",
  "Poster": "https://images-na.ssl-images-amazon.com/images/M/MV5BMTQ4MDgzNjM5MF5BMl5BanBnXkFtZTYwMjUwMzY2._V1_SX300.jpg",
- "Ratings": [],
+ "Ratings": [{"Source": "Internet Movie Database", "Value": "7.2/10"}],
  "Metascore": "60",
  "imdbRating": "7.2",
  "imdbVotes": "211,530",
@@ -44,8 +47,126 @@ import java.util.List;
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class MovieDetails {
+
+    /**
+     * Value of a numeric field that is missing or "N/A".
+     */
+    public static final int UNKNOWN = -1;
+
     public String response;
     public String poster;
     public String title;
-    public List<Pair<String, String>> data = new ArrayList<>();
+    public int startYear = UNKNOWN;
+    /**
+     * Last year of a finished range, the start year for a single year, or {@link #UNKNOWN} if the
+     * range is still running.
+     */
+    public int endYear = UNKNOWN;
+    public int runtimeMinutes = UNKNOWN;
+    public int metascore = UNKNOWN;
+    /**
+     * IMDb rating out of 10, or NaN if unknown.
+     */
+    public float imdbRating = Float.NaN;
+    public int imdbVotes = UNKNOWN;
+    public List<Rating> ratings = new ArrayList<>();
+
+    /**
+     * Names and values of the text fields, alternating.
+     */
+    private String[] mFields = new String[2 * 24];
+    private int mFieldCount;
+    private List<Pair<String, String>> mDisplayData;
+
+    public void addField(String name, String value) {
+        if (2 * mFieldCount == mFields.length) {
+            mFields = Arrays.copyOf(mFields, 2 * mFields.length);
+        }
+        mFields[2 * mFieldCount] = name;
+        mFields[2 * mFieldCount + 1] = value;
+        mFieldCount++;
+        mDisplayData = null;
+    }
+
+    public int getFieldCount() {
+        return mFieldCount;
+    }
+
+    public String getFieldName(int index) {
+        return mFields[2 * index];
+    }
+
+    public String getFieldValue(int index) {
+        return mFields[2 * index + 1];
+    }
+
+    /**
+     * @return value of the text field with exactly the given name, or null
+     */
+    public String getField(String name) {
+        for (int i = 0; i < mFieldCount; i++) {
+            if (name.equals(mFields[2 * i])) {
+                return mFields[2 * i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the text fields in document order followed by the ratings, as the key-value pairs
+     * the details screen shows. Built on first use, so details that are only cached, prefetched or
+     * sorted by never allocate the pairs. Must not be modified.
+     */
+    public List<Pair<String, String>> getDisplayData() {
+        if (mDisplayData == null) {
+            final List<Pair<String, String>> displayData =
+                    new ArrayList<>(mFieldCount + ratings.size());
+            for (int i = 0; i < mFieldCount; i++) {
+                displayData.add(new Pair<>(getFieldName(i), getFieldValue(i)));
+            }
+            for (Rating rating : ratings) {
+                displayData.add(new Pair<>(rating.source, rating.value));
+            }
+            mDisplayData = displayData;
+        }
+        return mDisplayData;
+    }
+
+    /**
+     * A rating of the title by one source, e.g. "Rotten Tomatoes": "87%".
+     */
+    public static final class Rating {
+        public final String source;
+        public final String value;
+
+        public Rating(String source, String value) {
+            this.source = source;
+            this.value = value;
+        }
+
+        /**
+         * @return the rating scaled to 0-100, or {@link #UNKNOWN} if its value is not of the form
+         * "7.2/10", "60/100" or "87%"
+         */
+        public int getScore() {
+            if (value == null) {
+                return UNKNOWN;
+            }
+            try {
+                final int slash = value.indexOf('/');
+                if (slash > 0) {
+                    final float scale = Float.parseFloat(value.substring(slash + 1));
+                    return scale > 0
+                            ? Math.round(100 * Float.parseFloat(value.substring(0, slash)) / scale)
+                            : UNKNOWN;
+                }
+                if (value.endsWith("%")) {
+                    return Math.round(Float.parseFloat(value.substring(0, value.length() - 1)));
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            return UNKNOWN;
+        }
+    }
 }
@@ -0,0 +1,444 @@
+package com.jasontoradler.moviesearch.data;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary form of OMDb data for the disk caches, much smaller than the JSON and cheaper to
+ * read back. A record is laid out as:
+ * <ul>
+ * <li>a header: {@link #MAGIC}, the {@link #VERSION} and the kind of record</li>
+ * <li>a dictionary of every distinct String in the record, each stored once as its length in
+ * UTF-8 bytes followed by the bytes</li>
+ * <li>the record itself, where Strings are indices into the dictionary and numbers are varints
+ * (zig-zag encoded, so small negative numbers stay small too); each object starts with a bitmap of
+ * which of its optional fields follow, so missing values take no space at all. The source and value
+ * of a rating may each be null, so they are stored as their index plus one, with 0 for null.</li>
+ * </ul>
+ * Records are decoded straight from a {@link ByteBuffer}, e.g. one wrapping a SQLite blob or a
+ * memory-mapped file, without copying them into a stream first. Decoding stops at the end of the
+ * record, so it may be followed by other data.
+ * <p>
+ * The methods have no state and may be called from any thread.
+ */
+public final class OmdbCodec {
+
+    private static final int MAGIC = 0x4f4d4442;
+    /**
+     * Increment whenever the layout changes; records of another version are rejected rather than
+     * misread.
+     */
+    private static final int VERSION = 1;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int KIND_SEARCH_RESULTS = 1;
+    private static final int KIND_SEARCH_ITEMS = 2;
+    private static final int KIND_MOVIE_DETAILS = 3;
+
+    // optional fields of SearchResults
+    private static final int RESULTS_RESPONSE = 1;
+    private static final int RESULTS_ERROR = 1 << 1;
+    private static final int RESULTS_SEARCH = 1 << 2;
+
+    // optional fields of SearchItem
+    private static final int ITEM_TITLE = 1;
+    private static final int ITEM_YEAR = 1 << 1;
+    private static final int ITEM_IMDB_ID = 1 << 2;
+    private static final int ITEM_TYPE = 1 << 3;
+    private static final int ITEM_POSTER = 1 << 4;
+
+    // optional fields of MovieDetails
+    private static final int DETAILS_RESPONSE = 1;
+    private static final int DETAILS_POSTER = 1 << 1;
+    private static final int DETAILS_TITLE = 1 << 2;
+    private static final int DETAILS_START_YEAR = 1 << 3;
+    private static final int DETAILS_END_YEAR = 1 << 4;
+    private static final int DETAILS_RUNTIME = 1 << 5;
+    private static final int DETAILS_METASCORE = 1 << 6;
+    private static final int DETAILS_IMDB_RATING = 1 << 7;
+    private static final int DETAILS_IMDB_VOTES = 1 << 8;
+
+    private OmdbCodec() {
+    }
+
+    public static byte[] encodeSearchResults(SearchResults searchResults) {
+        final Writer writer = new Writer();
+        int fields = 0;
+        fields |= searchResults.Response != null ? RESULTS_RESPONSE : 0;
+        fields |= searchResults.Error != null ? RESULTS_ERROR : 0;
+        fields |= searchResults.Search != null ? RESULTS_SEARCH : 0;
+        writer.writeInt(fields);
+        writer.writeInt(searchResults.totalResults);
+        if (searchResults.Response != null) {
+            writer.writeString(searchResults.Response);
+        }
+        if (searchResults.Error != null) {
+            writer.writeString(searchResults.Error);
+        }
+        if (searchResults.Search != null) {
+            writeItems(writer, searchResults.Search);
+        }
+        return writer.toByteArray(KIND_SEARCH_RESULTS);
+    }
+
+    public static SearchResults decodeSearchResults(ByteBuffer buffer) throws IOException {
+        try {
+            final Reader reader = new Reader(buffer, KIND_SEARCH_RESULTS);
+            final SearchResults searchResults = new SearchResults();
+            final int fields = reader.readInt();
+            searchResults.totalResults = reader.readInt();
+            if ((fields & RESULTS_RESPONSE) != 0) {
+                searchResults.Response = reader.readString();
+            }
+            if ((fields & RESULTS_ERROR) != 0) {
+                searchResults.Error = reader.readString();
+            }
+            if ((fields & RESULTS_SEARCH) != 0) {
+                searchResults.Search = readItems(reader);
+            }
+            return searchResults;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated search results");
+        }
+    }
+
+    /**
+     * Encode a list of items on its own; the favorite state of the items is not part of it.
+     */
+    public static byte[] encodeSearchItems(List<SearchItem> items) {
+        final Writer writer = new Writer();
+        writeItems(writer, items);
+        return writer.toByteArray(KIND_SEARCH_ITEMS);
+    }
+
+    public static List<SearchItem> decodeSearchItems(ByteBuffer buffer) throws IOException {
+        try {
+            return readItems(new Reader(buffer, KIND_SEARCH_ITEMS));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated search items");
+        }
+    }
+
+    public static byte[] encodeMovieDetails(MovieDetails movieDetails) {
+        final Writer writer = new Writer();
+        int fields = 0;
+        fields |= movieDetails.response != null ? DETAILS_RESPONSE : 0;
+        fields |= movieDetails.poster != null ? DETAILS_POSTER : 0;
+        fields |= movieDetails.title != null ? DETAILS_TITLE : 0;
+        fields |= movieDetails.startYear != MovieDetails.UNKNOWN ? DETAILS_START_YEAR : 0;
+        fields |= movieDetails.endYear != MovieDetails.UNKNOWN ? DETAILS_END_YEAR : 0;
+        fields |= movieDetails.runtimeMinutes != MovieDetails.UNKNOWN ? DETAILS_RUNTIME : 0;
+        fields |= movieDetails.metascore != MovieDetails.UNKNOWN ? DETAILS_METASCORE : 0;
+        fields |= !Float.isNaN(movieDetails.imdbRating) ? DETAILS_IMDB_RATING : 0;
+        fields |= movieDetails.imdbVotes != MovieDetails.UNKNOWN ? DETAILS_IMDB_VOTES : 0;
+        writer.writeInt(fields);
+        if (movieDetails.response != null) {
+            writer.writeString(movieDetails.response);
+        }
+        if (movieDetails.poster != null) {
+            writer.writeString(movieDetails.poster);
+        }
+        if (movieDetails.title != null) {
+            writer.writeString(movieDetails.title);
+        }
+        if (movieDetails.startYear != MovieDetails.UNKNOWN) {
+            writer.writeInt(movieDetails.startYear);
+        }
+        if (movieDetails.endYear != MovieDetails.UNKNOWN) {
+            writer.writeInt(movieDetails.endYear);
+        }
+        if (movieDetails.runtimeMinutes != MovieDetails.UNKNOWN) {
+            writer.writeInt(movieDetails.runtimeMinutes);
+        }
+        if (movieDetails.metascore != MovieDetails.UNKNOWN) {
+            writer.writeInt(movieDetails.metascore);
+        }
+        if (!Float.isNaN(movieDetails.imdbRating)) {
+            writer.writeFixedInt(Float.floatToIntBits(movieDetails.imdbRating));
+        }
+        if (movieDetails.imdbVotes != MovieDetails.UNKNOWN) {
+            writer.writeInt(movieDetails.imdbVotes);
+        }
+        writer.writeCount(movieDetails.getFieldCount());
+        for (int i = 0; i < movieDetails.getFieldCount(); i++) {
+            writer.writeString(movieDetails.getFieldName(i));
+            writer.writeString(movieDetails.getFieldValue(i));
+        }
+        writer.writeCount(movieDetails.ratings.size());
+        for (MovieDetails.Rating rating : movieDetails.ratings) {
+            writer.writeNullableString(rating.source);
+            writer.writeNullableString(rating.value);
+        }
+        return writer.toByteArray(KIND_MOVIE_DETAILS);
+    }
+
+    public static MovieDetails decodeMovieDetails(ByteBuffer buffer) throws IOException {
+        try {
+            final Reader reader = new Reader(buffer, KIND_MOVIE_DETAILS);
+            final MovieDetails movieDetails = new MovieDetails();
+            final int fields = reader.readInt();
+            if ((fields & DETAILS_RESPONSE) != 0) {
+                movieDetails.response = reader.readString();
+            }
+            if ((fields & DETAILS_POSTER) != 0) {
+                movieDetails.poster = reader.readString();
+            }
+            if ((fields & DETAILS_TITLE) != 0) {
+                movieDetails.title = reader.readString();
+            }
+            if ((fields & DETAILS_START_YEAR) != 0) {
+                movieDetails.startYear = reader.readInt();
+            }
+            if ((fields & DETAILS_END_YEAR) != 0) {
+                movieDetails.endYear = reader.readInt();
+            }
+            if ((fields & DETAILS_RUNTIME) != 0) {
+                movieDetails.runtimeMinutes = reader.readInt();
+            }
+            if ((fields & DETAILS_METASCORE) != 0) {
+                movieDetails.metascore = reader.readInt();
+            }
+            if ((fields & DETAILS_IMDB_RATING) != 0) {
+                movieDetails.imdbRating = Float.intBitsToFloat(reader.readFixedInt());
+            }
+            if ((fields & DETAILS_IMDB_VOTES) != 0) {
+                movieDetails.imdbVotes = reader.readInt();
+            }
+            final int fieldCount = reader.readCount();
+            for (int i = 0; i < fieldCount; i++) {
+                movieDetails.addField(reader.readString(), reader.readString());
+            }
+            final int ratingCount = reader.readCount();
+            for (int i = 0; i < ratingCount; i++) {
+                movieDetails.ratings.add(new MovieDetails.Rating(
+                        reader.readNullableString(), reader.readNullableString()));
+            }
+            return movieDetails;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated movie details");
+        }
+    }
+
+    private static void writeItems(Writer writer, List<SearchItem> items) {
+        writer.writeCount(items.size());
+        for (SearchItem item : items) {
+            int fields = 0;
+            fields |= item.Title != null ? ITEM_TITLE : 0;
+            fields |= item.Year != null ? ITEM_YEAR : 0;
+            fields |= item.imdbID != null ? ITEM_IMDB_ID : 0;
+            fields |= item.Type != null ? ITEM_TYPE : 0;
+            fields |= item.Poster != null ? ITEM_POSTER : 0;
+            writer.writeInt(fields);
+            for (String value : new String[]{
+                    item.Title, item.Year, item.imdbID, item.Type, item.Poster}) {
+                if (value != null) {
+                    writer.writeString(value);
+                }
+            }
+        }
+    }
+
+    private static ArrayList<SearchItem> readItems(Reader reader) throws IOException {
+        final int size = reader.readCount();
+        final ArrayList<SearchItem> items = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            final SearchItem item = new SearchItem();
+            final int fields = reader.readInt();
+            if ((fields & ITEM_TITLE) != 0) {
+                item.Title = reader.readString();
+            }
+            if ((fields & ITEM_YEAR) != 0) {
+                item.Year = reader.readString();
+            }
+            if ((fields & ITEM_IMDB_ID) != 0) {
+                item.imdbID = reader.readString();
+            }
+            if ((fields & ITEM_TYPE) != 0) {
+                item.Type = reader.readString();
+            }
+            if ((fields & ITEM_POSTER) != 0) {
+                item.Poster = reader.readString();
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Collects the dictionary while the record is written, since it is only complete at the end.
+     */
+    private static final class Writer {
+        private final Map<String, Integer> mIndices = new HashMap<>();
+        private final List<String> mStrings = new ArrayList<>();
+        private byte[] mBody = new byte[256];
+        private int mLength;
+
+        void writeString(String value) {
+            writeVarint(indexOf(value));
+        }
+
+        void writeNullableString(String value) {
+            writeVarint(value != null ? indexOf(value) + 1 : 0);
+        }
+
+        private int indexOf(String value) {
+            Integer index = mIndices.get(value);
+            if (index == null) {
+                index = mStrings.size();
+                mStrings.add(value);
+                mIndices.put(value, index);
+            }
+            return index;
+        }
+
+        void writeInt(int value) {
+            // zig-zag
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        /**
+         * Write a number of elements, read back by {@link Reader#readCount()}.
+         */
+        void writeCount(int count) {
+            writeVarint(count);
+        }
+
+        void writeFixedInt(int value) {
+            ensureCapacity(4);
+            mBody[mLength++] = (byte) (value >>> 24);
+            mBody[mLength++] = (byte) (value >>> 16);
+            mBody[mLength++] = (byte) (value >>> 8);
+            mBody[mLength++] = (byte) value;
+        }
+
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7f) != 0) {
+                mBody[mLength++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mBody[mLength++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (mLength + extra > mBody.length) {
+                mBody = Arrays.copyOf(mBody, Math.max(mLength + extra, 2 * mBody.length));
+            }
+        }
+
+        byte[] toByteArray(int kind) {
+            final byte[] body = mBody;
+            final int bodyLength = mLength;
+            // the dictionary goes in front of the body, so reuse the varint writing for it
+            mBody = new byte[64 + bodyLength];
+            mLength = 0;
+            writeFixedInt(MAGIC);
+            writeVarint(VERSION);
+            writeVarint(kind);
+            writeVarint(mStrings.size());
+            for (String value : mStrings) {
+                final byte[] bytes = value.getBytes(UTF_8);
+                writeVarint(bytes.length);
+                ensureCapacity(bytes.length);
+                System.arraycopy(bytes, 0, mBody, mLength, bytes.length);
+                mLength += bytes.length;
+            }
+            ensureCapacity(bodyLength);
+            System.arraycopy(body, 0, mBody, mLength, bodyLength);
+            return Arrays.copyOf(mBody, mLength + bodyLength);
+        }
+    }
+
+    /**
+     * Reads the header and dictionary of a record, then its fields in order.
+     */
+    private static final class Reader {
+        private final ByteBuffer mBuffer;
+        private final String[] mStrings;
+
+        Reader(ByteBuffer buffer, int kind) throws IOException {
+            mBuffer = buffer;
+            if (buffer.remaining() < 4 || buffer.getInt() != MAGIC) {
+                throw new IOException("not an OMDb record");
+            }
+            final int version = readVarint();
+            if (version != VERSION) {
+                throw new IOException("unsupported record version " + version);
+            }
+            final int actualKind = readVarint();
+            if (actualKind != kind) {
+                throw new IOException("expected record kind " + kind + " but found " + actualKind);
+            }
+            mStrings = new String[readCount()];
+            for (int i = 0; i < mStrings.length; i++) {
+                final int length = readCount();
+                if (buffer.hasArray()) {
+                    // decode in place rather than copying the bytes out first
+                    mStrings[i] = new String(buffer.array(),
+                            buffer.arrayOffset() + buffer.position(), length, UTF_8);
+                    buffer.position(buffer.position() + length);
+                } else {
+                    final byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    mStrings[i] = new String(bytes, UTF_8);
+                }
+            }
+        }
+
+        String readString() throws IOException {
+            return stringAt(readVarint());
+        }
+
+        String readNullableString() throws IOException {
+            final int index = readVarint();
+            return index != 0 ? stringAt(index - 1) : null;
+        }
+
+        private String stringAt(int index) throws IOException {
+            if (index < 0 || index >= mStrings.length) {
+                throw new IOException("string " + index + " not in dictionary of "
+                        + mStrings.length);
+            }
+            return mStrings[index];
+        }
+
+        int readInt() throws IOException {
+            final int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        int readFixedInt() {
+            return mBuffer.getInt();
+        }
+
+        /**
+         * @return a number of elements or bytes, checked against what is left of the record
+         */
+        int readCount() throws IOException {
+            final int count = readVarint();
+            if (count < 0 || count > mBuffer.remaining()) {
+                throw new IOException("corrupt record: count of " + count);
+            }
+            return count;
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                final byte b = mBuffer.get();
+                value |= (b & 0x7f) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("corrupt record: varint too long");
+        }
+    }
+}
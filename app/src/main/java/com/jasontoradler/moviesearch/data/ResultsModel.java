@@ -0,0 +1,320 @@
+package com.jasontoradler.moviesearch.data;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The accumulated results of a title search, published as immutable {@link Snapshot}s. The
+ * results of a generation are appended to a single {@link SearchItemStore}, so that every page
+ * shares its string pool and columns, and each change publishes a new snapshot holding a read-only
+ * {@link SearchItemStore#snapshot()} of the store. Readers therefore need no lock: whatever
+ * snapshot they hold stays consistent however the results change afterwards, on whichever thread.
+ * <p>
+ * Writers may call from any thread; they take turns on a lock, which is only held while a page is
+ * packed. A change made for an older generation, i.e. for results that have since been replaced,
+ * is dropped instead of being mixed into the new results.
+ */
+public final class ResultsModel {
+
+    /**
+     * Notified on the main thread after the results have changed.
+     */
+    public interface Listener {
+        /**
+         * @param snapshot the latest results; changes made in quick succession off the main
+         *                 thread may be reported together
+         */
+        void onResultsChanged(Snapshot snapshot);
+    }
+
+    private final Object mLock = new Object();
+    private volatile Snapshot mSnapshot = Snapshot.EMPTY;
+    /**
+     * The store the results of the current generation are appended to; guarded by mLock.
+     */
+    private SearchItemStore mStore = new SearchItemStore();
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mNotifyListeners = new Runnable() {
+        @Override
+        public void run() {
+            final Snapshot snapshot = mSnapshot;
+            for (Listener listener : mListeners) {
+                listener.onResultsChanged(snapshot);
+            }
+        }
+    };
+
+    /**
+     * @return the current results
+     */
+    public Snapshot get() {
+        return mSnapshot;
+    }
+
+    public void addListener(Listener listener) {
+        if (!mListeners.contains(listener)) {
+            mListeners.add(listener);
+        }
+    }
+
+    public void removeListener(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    /**
+     * Append a page of items to the results. The favorite state of each item is taken from
+     * {@link SearchItem#isFavorite}.
+     *
+     * @param generation generation of the results the page belongs to
+     * @return the new snapshot, or null if the results have been replaced since
+     */
+    public Snapshot append(int generation, List<SearchItem> items) {
+        final Snapshot updated;
+        synchronized (mLock) {
+            final Snapshot current = mSnapshot;
+            if (current.mGeneration != generation) {
+                return null;
+            }
+            mStore.append(items);
+            updated = new Snapshot(generation, current.mVersion + 1, mStore.snapshot(),
+                    withFavorites(current.mFavorites, current.mItems.size(), items));
+            mSnapshot = updated;
+        }
+        notifyChanged();
+        return updated;
+    }
+
+    /**
+     * Replace the results with the items as a new generation, in a single change so that readers
+     * never see the results empty in between.
+     */
+    public Snapshot replace(List<SearchItem> items) {
+        final Snapshot updated;
+        synchronized (mLock) {
+            mStore = new SearchItemStore();
+            mStore.append(items);
+            updated = new Snapshot(mSnapshot.mGeneration + 1, 0, mStore.snapshot(),
+                    withFavorites(new BitSet(), 0, items));
+            mSnapshot = updated;
+        }
+        notifyChanged();
+        return updated;
+    }
+
+    /**
+     * Remove every result, starting a new generation.
+     */
+    public Snapshot clear() {
+        return replace(Collections.<SearchItem>emptyList());
+    }
+
+    /**
+     * @return the new snapshot, or null if the results have been replaced since the generation or
+     * the position is out of range
+     */
+    public Snapshot setFavorite(int generation, int position, boolean isFavorite) {
+        final Snapshot updated;
+        synchronized (mLock) {
+            final Snapshot current = mSnapshot;
+            if (current.mGeneration != generation || position < 0
+                    || position >= current.mItems.size()) {
+                return null;
+            }
+            if (current.isFavorite(position) == isFavorite) {
+                return current;
+            }
+            final BitSet favorites = (BitSet) current.mFavorites.clone();
+            favorites.set(position, isFavorite);
+            updated = new Snapshot(generation, current.mVersion + 1, current.mItems, favorites);
+            mSnapshot = updated;
+        }
+        notifyChanged();
+        return updated;
+    }
+
+    /**
+     * Replace the favorite state of the results before the limit, e.g. once the saved favorites
+     * have been loaded. Results appended in the meantime keep theirs.
+     *
+     * @param favorites the positions before the limit that are favorites
+     * @return the new snapshot, or null if the results have been replaced since the generation
+     */
+    public Snapshot setFavorites(int generation, BitSet favorites, int limit) {
+        final Snapshot updated;
+        synchronized (mLock) {
+            final Snapshot current = mSnapshot;
+            if (current.mGeneration != generation) {
+                return null;
+            }
+            final int end = Math.min(limit, current.mItems.size());
+            final BitSet merged = (BitSet) current.mFavorites.clone();
+            merged.clear(0, end);
+            merged.or(favorites.get(0, end));
+            updated = new Snapshot(generation, current.mVersion + 1, current.mItems, merged);
+            mSnapshot = updated;
+        }
+        notifyChanged();
+        return updated;
+    }
+
+    /**
+     * @return the favorites with those of the items appended at the offset, or the same BitSet
+     * if none of the items is a favorite, which leaves it shared with the previous snapshot
+     */
+    private static BitSet withFavorites(BitSet favorites, int offset, List<SearchItem> items) {
+        BitSet result = favorites;
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).isFavorite) {
+                if (result == favorites) {
+                    result = (BitSet) favorites.clone();
+                }
+                result.set(offset + i);
+            }
+        }
+        return result;
+    }
+
+    private void notifyChanged() {
+        mMainHandler.removeCallbacks(mNotifyListeners);
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            mNotifyListeners.run();
+        } else {
+            mMainHandler.post(mNotifyListeners);
+        }
+    }
+
+    /**
+     * Immutable view of the results at one point in time, safe to read from any thread. It has the
+     * same read methods as {@link SearchItemStore}.
+     */
+    public static final class Snapshot {
+
+        public static final Snapshot EMPTY =
+                new Snapshot(0, 0, new SearchItemStore(0).snapshot(), new BitSet());
+
+        private final int mGeneration;
+        private final long mVersion;
+        private final SearchItemStore mItems;
+        /**
+         * Never modified once the snapshot is published; snapshots without changes to the
+         * favorites share it.
+         */
+        private final BitSet mFavorites;
+
+        private Snapshot(int generation, long version, SearchItemStore items, BitSet favorites) {
+            mGeneration = generation;
+            mVersion = version;
+            mItems = items;
+            mFavorites = favorites;
+        }
+
+        /**
+         * @return number that changes each time the results are replaced, so that a snapshot of
+         * the same generation is known to be a prefix of a later one
+         */
+        public int getGeneration() {
+            return mGeneration;
+        }
+
+        /**
+         * @return number that grows with every change within a generation
+         */
+        public long getVersion() {
+            return mVersion;
+        }
+
+        public int size() {
+            return mItems.size();
+        }
+
+        /**
+         * @return a new SearchItem holding the values at the position, or null if it is out of
+         * range
+         */
+        public SearchItem get(int position) {
+            final SearchItem item = mItems.get(position);
+            if (item != null) {
+                item.isFavorite = isFavorite(position);
+            }
+            return item;
+        }
+
+        /**
+         * @return read-only List view of the snapshot, materializing each item as it is read
+         */
+        public List<SearchItem> asList() {
+            return new AbstractList<SearchItem>() {
+                @Override
+                public SearchItem get(int location) {
+                    return Snapshot.this.get(location);
+                }
+
+                @Override
+                public int size() {
+                    return mItems.size();
+                }
+            };
+        }
+
+        public String getTitle(int position) {
+            return mItems.getTitle(checkPosition(position));
+        }
+
+        public String getPoster(int position) {
+            return mItems.getPoster(checkPosition(position));
+        }
+
+        public String getImdbId(int position) {
+            return mItems.getImdbId(checkPosition(position));
+        }
+
+        public SearchItemStore.Type getType(int position) {
+            return mItems.getType(checkPosition(position));
+        }
+
+        public String getTypeText(int position) {
+            return mItems.getTypeText(checkPosition(position));
+        }
+
+        public String getYear(int position) {
+            return mItems.getYear(checkPosition(position));
+        }
+
+        public int getStartYear(int position) {
+            return mItems.getStartYear(checkPosition(position));
+        }
+
+        public int getEndYear(int position) {
+            return mItems.getEndYear(checkPosition(position));
+        }
+
+        public boolean isFavorite(int position) {
+            return mFavorites.get(position);
+        }
+
+        /**
+         * @return a copy of the favorite positions
+         */
+        public BitSet getFavorites() {
+            return (BitSet) mFavorites.clone();
+        }
+
+        /**
+         * The columns of the store may extend past the snapshot, so reads beyond its size must
+         * fail rather than return later results.
+         */
+        private int checkPosition(int position) {
+            if (position < 0 || position >= mItems.size()) {
+                throw new IndexOutOfBoundsException(position + " of " + mItems.size());
+            }
+            return position;
+        }
+    }
+}
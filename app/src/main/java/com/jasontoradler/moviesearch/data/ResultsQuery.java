@@ -0,0 +1,121 @@
+package com.jasontoradler.moviesearch.data;
+
+/**
+ * Which of the loaded results to show, and in what order. Immutable; the with* methods return a
+ * modified copy.
+ */
+public final class ResultsQuery {
+
+    public enum Sort {
+        /**
+         * The order OMDb returned the results in.
+         */
+        RELEVANCE,
+        TITLE,
+        YEAR_NEWEST,
+        YEAR_OLDEST
+    }
+
+    /**
+     * Bound of a year range that is not limited on that side.
+     */
+    public static final int ANY_YEAR = -1;
+
+    /**
+     * Every result in the order OMDb returned them.
+     */
+    public static final ResultsQuery ALL =
+            new ResultsQuery(Sort.RELEVANCE, null, ANY_YEAR, ANY_YEAR);
+
+    public final Sort sort;
+    /**
+     * Type of the results to show, or null for any type.
+     */
+    public final SearchItemStore.Type type;
+    public final int minYear;
+    public final int maxYear;
+
+    /**
+     * @param type    type of the results to show, or null for any type
+     * @param minYear first year of the range to show, or {@link #ANY_YEAR}
+     * @param maxYear last year of the range to show, or {@link #ANY_YEAR}
+     */
+    public ResultsQuery(Sort sort, SearchItemStore.Type type, int minYear, int maxYear) {
+        this.sort = sort;
+        this.type = type;
+        this.minYear = minYear;
+        this.maxYear = maxYear;
+    }
+
+    public ResultsQuery withSort(Sort sort) {
+        return new ResultsQuery(sort, type, minYear, maxYear);
+    }
+
+    public ResultsQuery withType(SearchItemStore.Type type) {
+        return new ResultsQuery(sort, type, minYear, maxYear);
+    }
+
+    public ResultsQuery withYears(int minYear, int maxYear) {
+        return new ResultsQuery(sort, type, minYear, maxYear);
+    }
+
+    /**
+     * @return true if every result passes the query
+     */
+    public boolean isUnfiltered() {
+        return type == null && minYear == ANY_YEAR && maxYear == ANY_YEAR;
+    }
+
+    /**
+     * @return true if the result at the position should be shown. A result passes the year range
+     * if any of its years fall within it; results whose year is unknown only pass an unbounded
+     * range.
+     */
+    boolean accepts(ResultsModel.Snapshot snapshot, int position) {
+        if (type != null && snapshot.getType(position) != type) {
+            return false;
+        }
+        if (minYear == ANY_YEAR && maxYear == ANY_YEAR) {
+            return true;
+        }
+        final int start = snapshot.getStartYear(position);
+        if (start < 0) {
+            return false;
+        }
+        // a range that is still running extends to the present
+        final int end = snapshot.getEndYear(position) >= 0
+                ? snapshot.getEndYear(position)
+                : Integer.MAX_VALUE;
+        return (maxYear == ANY_YEAR || start <= maxYear) && (minYear == ANY_YEAR || end >= minYear);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ResultsQuery)) {
+            return false;
+        }
+        final ResultsQuery other = (ResultsQuery) o;
+        return sort == other.sort
+                && type == other.type
+                && minYear == other.minYear
+                && maxYear == other.maxYear;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = sort.hashCode();
+        result = 31 * result + (type != null ? type.hashCode() : 0);
+        result = 31 * result + minYear;
+        result = 31 * result + maxYear;
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultsQuery{sort=" + sort + ", type=" + type
+                + ", years=" + minYear + ".." + maxYear + "}";
+    }
+}
@@ -0,0 +1,247 @@
+package com.jasontoradler.moviesearch.data;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Locale;
+
+/**
+ * The results of a {@link ResultsModel.Snapshot} that pass a {@link ResultsQuery}, in the order of
+ * the query, as a list of positions into the snapshot. The sort key of each result is computed
+ * once, when the result is first seen, so comparisons don't touch the snapshot.
+ * <p>
+ * {@link #of} filters and sorts all results and belongs on a background thread when there are
+ * many. {@link #append} only merges the results appended since, each by a binary search of the
+ * sorted positions, which is cheap enough for the main thread even with 10,000 results, and
+ * reports exactly where they were inserted.
+ * <p>
+ * Immutable and safe to read from any thread.
+ */
+public final class ResultsView {
+
+    public static final ResultsView EMPTY =
+            of(ResultsModel.Snapshot.EMPTY, ResultsQuery.ALL);
+
+    /**
+     * Year key of a result whose year is unknown, which sorts it last.
+     */
+    private static final int UNKNOWN_YEAR_KEY = Integer.MAX_VALUE;
+
+    private final ResultsModel.Snapshot mSnapshot;
+    private final ResultsQuery mQuery;
+    /**
+     * Sort keys by snapshot position; only those the sort of the query needs are computed.
+     */
+    private final String[] mTitleKeys;
+    private final int[] mYearKeys;
+    /**
+     * Snapshot positions of the results that pass the query, in order.
+     */
+    private final int[] mOrder;
+
+    private ResultsView(
+            ResultsModel.Snapshot snapshot,
+            ResultsQuery query,
+            String[] titleKeys,
+            int[] yearKeys,
+            int[] order) {
+        mSnapshot = snapshot;
+        mQuery = query;
+        mTitleKeys = titleKeys;
+        mYearKeys = yearKeys;
+        mOrder = order;
+    }
+
+    /**
+     * Filter and sort all results of the snapshot.
+     */
+    public static ResultsView of(ResultsModel.Snapshot snapshot, ResultsQuery query) {
+        final int size = snapshot.size();
+        final String[] titleKeys = query.sort == ResultsQuery.Sort.TITLE ? new String[size] : null;
+        final int[] yearKeys = query.sort == ResultsQuery.Sort.YEAR_NEWEST
+                || query.sort == ResultsQuery.Sort.YEAR_OLDEST ? new int[size] : null;
+        computeKeys(snapshot, query.sort, titleKeys, yearKeys, 0);
+
+        final int[] accepted = accept(snapshot, query, 0);
+        if (query.sort != ResultsQuery.Sort.RELEVANCE) {
+            sort(accepted, query.sort, titleKeys, yearKeys);
+        }
+        return new ResultsView(snapshot, query, titleKeys, yearKeys, accepted);
+    }
+
+    /**
+     * @return true if the snapshot only differs from the one of this view by appended results, so
+     * that {@link #append} can bring the view up to date
+     */
+    public boolean canAppend(ResultsModel.Snapshot next) {
+        return next.getGeneration() == mSnapshot.getGeneration()
+                && next.size() >= mSnapshot.size();
+    }
+
+    /**
+     * Merge the results appended to the snapshot into the view.
+     *
+     * @param next     a later snapshot of the same generation, see {@link #canAppend}
+     * @param callback told about each range of view positions that was inserted, in ascending
+     *                 order, so that it can be passed on to an adapter as is
+     */
+    public ResultsView append(ResultsModel.Snapshot next, ListUpdateCallback callback) {
+        if (!canAppend(next)) {
+            throw new IllegalArgumentException("not an append of " + mSnapshot.size()
+                    + " results in generation " + mSnapshot.getGeneration());
+        }
+        final int oldSize = mSnapshot.size();
+        final int newSize = next.size();
+        final String[] titleKeys = mTitleKeys != null ? Arrays.copyOf(mTitleKeys, newSize) : null;
+        final int[] yearKeys = mYearKeys != null ? Arrays.copyOf(mYearKeys, newSize) : null;
+        computeKeys(next, mQuery.sort, titleKeys, yearKeys, oldSize);
+
+        final int[] added = accept(next, mQuery, oldSize);
+        if (added.length == 0) {
+            return new ResultsView(next, mQuery, titleKeys, yearKeys, mOrder);
+        }
+        final int[] merged = new int[mOrder.length + added.length];
+        if (mQuery.sort == ResultsQuery.Sort.RELEVANCE) {
+            // appended results come after every result already in the view
+            System.arraycopy(mOrder, 0, merged, 0, mOrder.length);
+            System.arraycopy(added, 0, merged, mOrder.length, added.length);
+            callback.onInserted(mOrder.length, added.length);
+            return new ResultsView(next, mQuery, titleKeys, yearKeys, merged);
+        }
+
+        sort(added, mQuery.sort, titleKeys, yearKeys);
+        int from = 0;
+        int to = 0;
+        int i = 0;
+        while (i < added.length) {
+            final int insertAt = upperBound(mOrder, from, added[i], titleKeys, yearKeys);
+            final int copied = insertAt - from;
+            System.arraycopy(mOrder, from, merged, to, copied);
+            to += copied;
+            from = insertAt;
+            // the added results that fall between the same two old ones are one inserted range
+            final int rangeStart = to;
+            do {
+                merged[to++] = added[i++];
+            } while (i < added.length
+                    && (from == mOrder.length
+                    || compare(mQuery.sort, titleKeys, yearKeys, added[i], mOrder[from]) < 0));
+            callback.onInserted(rangeStart, to - rangeStart);
+        }
+        System.arraycopy(mOrder, from, merged, to, mOrder.length - from);
+        return new ResultsView(next, mQuery, titleKeys, yearKeys, merged);
+    }
+
+    public ResultsModel.Snapshot getSnapshot() {
+        return mSnapshot;
+    }
+
+    public ResultsQuery getQuery() {
+        return mQuery;
+    }
+
+    public int size() {
+        return mOrder.length;
+    }
+
+    /**
+     * @return position in the snapshot of the result shown at the position of the view
+     */
+    public int getPosition(int viewPosition) {
+        return mOrder[viewPosition];
+    }
+
+    /**
+     * @return index of the first of the positions from the index on that sorts after the position
+     */
+    private int upperBound(int[] order, int from, int position, String[] titleKeys,
+            int[] yearKeys) {
+        int low = from;
+        int high = order.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (compare(mQuery.sort, titleKeys, yearKeys, order[middle], position) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the positions from the given one on whose results pass the query, in order
+     */
+    private static int[] accept(ResultsModel.Snapshot snapshot, ResultsQuery query, int from) {
+        final int[] accepted = new int[snapshot.size() - from];
+        int count = 0;
+        final boolean isUnfiltered = query.isUnfiltered();
+        for (int position = from; position < snapshot.size(); position++) {
+            if (isUnfiltered || query.accepts(snapshot, position)) {
+                accepted[count++] = position;
+            }
+        }
+        return count == accepted.length ? accepted : Arrays.copyOf(accepted, count);
+    }
+
+    private static void computeKeys(
+            ResultsModel.Snapshot snapshot,
+            ResultsQuery.Sort sort,
+            String[] titleKeys,
+            int[] yearKeys,
+            int from) {
+        for (int position = from; position < snapshot.size(); position++) {
+            if (titleKeys != null) {
+                final String title = snapshot.getTitle(position);
+                titleKeys[position] = title != null ? title.toLowerCase(Locale.getDefault()) : "";
+            }
+            if (yearKeys != null) {
+                final int year = snapshot.getStartYear(position);
+                // keys always sort ascending
+                yearKeys[position] = year < 0
+                        ? UNKNOWN_YEAR_KEY
+                        : sort == ResultsQuery.Sort.YEAR_NEWEST ? -year : year;
+            }
+        }
+    }
+
+    private static void sort(
+            int[] positions,
+            final ResultsQuery.Sort sort,
+            final String[] titleKeys,
+            final int[] yearKeys) {
+        final Integer[] boxed = new Integer[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            boxed[i] = positions[i];
+        }
+        Arrays.sort(boxed, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return ResultsView.compare(sort, titleKeys, yearKeys, a, b);
+            }
+        });
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = boxed[i];
+        }
+    }
+
+    /**
+     * Compare the results at two positions by their keys, and by their order from OMDb when the
+     * keys are equal, so that no two results compare as equal.
+     */
+    private static int compare(
+            ResultsQuery.Sort sort,
+            String[] titleKeys,
+            int[] yearKeys,
+            int a,
+            int b) {
+        int result = 0;
+        if (sort == ResultsQuery.Sort.TITLE) {
+            result = titleKeys[a].compareTo(titleKeys[b]);
+        } else if (sort == ResultsQuery.Sort.YEAR_NEWEST || sort == ResultsQuery.Sort.YEAR_OLDEST) {
+            result = yearKeys[a] < yearKeys[b] ? -1 : (yearKeys[a] == yearKeys[b] ? 0 : 1);
+        }
+        return result != 0 ? result : (a < b ? -1 : (a == b ? 0 : 1));
+    }
+}
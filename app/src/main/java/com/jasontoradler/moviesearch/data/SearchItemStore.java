@@ -0,0 +1,498 @@
+package com.jasontoradler.moviesearch.data;
+
+import android.util.SparseArray;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact, column-oriented storage of the accumulated {@link SearchItem}s. Instead of one object
+ * with five Strings per result, each field is kept in a primitive array:
+ * <ul>
+ * <li>Type as a byte-sized {@link Type} constant</li>
+ * <li>Year as packed first/last years in two short arrays</li>
+ * <li>imdbID as its numeric part plus the number of digits</li>
+ * <li>Title and Poster as indices into a shared string pool, with the common poster URL prefix and
+ * suffix stripped before pooling</li>
+ * </ul>
+ * Values that don't fit the packed form (e.g. an unexpected year format) are kept verbatim on the
+ * side, so every item reads back exactly as it was appended. The favorite state of the items is
+ * not stored; {@link ResultsModel} keeps it.
+ * <p>
+ * Not thread-safe while it is being written to. A {@link #snapshot()} however is a read-only view
+ * of the items stored so far that later appends neither change nor write to, so once it has been
+ * safely published it may be read from any thread while the store keeps growing, as
+ * {@link ResultsModel} does.
+ */
+public final class SearchItemStore {
+
+    /**
+     * The types of result OMDb returns.
+     */
+    public enum Type {
+        MOVIE("movie"),
+        SERIES("series"),
+        EPISODE("episode"),
+        GAME("game"),
+        /**
+         * Any other or missing value; the original text is kept by the store.
+         */
+        OTHER(null);
+
+        private final String mText;
+
+        Type(String text) {
+            mText = text;
+        }
+
+        public String getText() {
+            return mText;
+        }
+
+        static Type fromText(String text) {
+            for (Type type : TYPES) {
+                if (type.mText != null && type.mText.equals(text)) {
+                    return type;
+                }
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * {@link Type#values()} copies the array on every call, which binding a row would do.
+     */
+    private static final Type[] TYPES = Type.values();
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    /**
+     * Stored in {@link #mEndYears} for a single year, e.g. "2002".
+     */
+    private static final short SINGLE_YEAR = 0;
+    /**
+     * Stored in {@link #mEndYears} for a range that is still running, e.g. "2010-".
+     */
+    private static final short OPEN_YEAR = -1;
+    /**
+     * Stored in {@link #mStartYears} when the year could not be packed.
+     */
+    private static final short UNPACKED = -1;
+    /**
+     * Separator OMDb uses in year ranges (an en dash).
+     */
+    private static final char YEAR_SEPARATOR = '\u2013';
+
+    private static final String IMDB_ID_PREFIX = "tt";
+    private static final String[] POSTER_PREFIXES = {
+            "",
+            "https://images-na.ssl-images-amazon.com/images/M/",
+            "https://m.media-amazon.com/images/M/",
+    };
+    private static final String POSTER_SUFFIX = "._V1_SX300.jpg";
+    private static final int POSTER_HAS_SUFFIX = 0x80;
+    /**
+     * Direct-mapped cache of year texts shared by all stores, so that binding a row does not build
+     * a new String for a year seen before. Entries are immutable and replaced whole, so readers on
+     * any thread see either a complete entry or none and need no lock.
+     */
+    private static final YearText[] YEAR_TEXT = new YearText[256];
+
+    private final boolean mIsSnapshot;
+
+    private int mSize;
+    /**
+     * Pool the store adds to; null in a snapshot, which only reads the pooled strings.
+     */
+    private final StringPool mPool;
+    private String[] mStrings;
+    private int[] mTitles;
+    private int[] mPosters;
+    private byte[] mPosterAffixes;
+    private int[] mImdbNumbers;
+    private byte[] mImdbDigits;
+    private byte[] mTypes;
+    private short[] mStartYears;
+    private short[] mEndYears;
+    /**
+     * Verbatim values that could not be packed, by position. Shared with the latest snapshot
+     * until the store changes them, see {@link #copyRawValuesIfShared()}.
+     */
+    private SparseArray<String> mRawImdbIds;
+    private SparseArray<String> mRawTypes;
+    private SparseArray<String> mRawYears;
+    private boolean mIsRawShared;
+
+    public SearchItemStore() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of items to allocate room for up front
+     */
+    public SearchItemStore(int capacity) {
+        mIsSnapshot = false;
+        mPool = new StringPool();
+        mStrings = mPool.getStrings();
+        mTitles = new int[capacity];
+        mPosters = new int[capacity];
+        mPosterAffixes = new byte[capacity];
+        mImdbNumbers = new int[capacity];
+        mImdbDigits = new byte[capacity];
+        mTypes = new byte[capacity];
+        mStartYears = new short[capacity];
+        mEndYears = new short[capacity];
+        mRawImdbIds = new SparseArray<>();
+        mRawTypes = new SparseArray<>();
+        mRawYears = new SparseArray<>();
+    }
+
+    private SearchItemStore(SearchItemStore store) {
+        mIsSnapshot = true;
+        mSize = store.mSize;
+        mPool = null;
+        mStrings = store.mStrings;
+        mTitles = store.mTitles;
+        mPosters = store.mPosters;
+        mPosterAffixes = store.mPosterAffixes;
+        mImdbNumbers = store.mImdbNumbers;
+        mImdbDigits = store.mImdbDigits;
+        mTypes = store.mTypes;
+        mStartYears = store.mStartYears;
+        mEndYears = store.mEndYears;
+        mRawImdbIds = store.mRawImdbIds;
+        mRawTypes = store.mRawTypes;
+        mRawYears = store.mRawYears;
+    }
+
+    /**
+     * @return read-only view of the items currently stored, sharing their storage. Appending to
+     * this store does not change the snapshot: the columns and the pool only ever grow, into new
+     * arrays once they are full, and the few values kept on the side are copied before they change.
+     */
+    public SearchItemStore snapshot() {
+        if (mIsSnapshot) {
+            return this;
+        }
+        mIsRawShared = true;
+        return new SearchItemStore(this);
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public void append(List<SearchItem> items) {
+        checkWritable();
+        ensureCapacity(mSize + items.size());
+        for (SearchItem item : items) {
+            append(item);
+        }
+    }
+
+    private void append(SearchItem item) {
+        final int position = mSize++;
+        mTitles[position] = mPool.add(item.Title);
+        packPoster(position, item.Poster);
+        packImdbId(position, item.imdbID);
+        packType(position, item.Type);
+        packYear(position, item.Year);
+        // the pool may have grown into a new array
+        mStrings = mPool.getStrings();
+    }
+
+    /**
+     * @return a new SearchItem holding the values at the position, or null if it is out of range
+     */
+    public SearchItem get(int position) {
+        if (position < 0 || position >= mSize) {
+            return null;
+        }
+        final SearchItem item = new SearchItem();
+        item.Title = getTitle(position);
+        item.Year = getYear(position);
+        item.imdbID = getImdbId(position);
+        item.Type = getTypeText(position);
+        item.Poster = getPoster(position);
+        return item;
+    }
+
+    /**
+     * @return read-only List view of the store, materializing each item as it is read
+     */
+    public List<SearchItem> asList() {
+        return new AbstractList<SearchItem>() {
+            @Override
+            public SearchItem get(int location) {
+                return SearchItemStore.this.get(location);
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+
+    public String getTitle(int position) {
+        return mStrings[mTitles[position]];
+    }
+
+    public String getPoster(int position) {
+        final String stored = mStrings[mPosters[position]];
+        final int affixes = mPosterAffixes[position] & 0xff;
+        final int prefix = affixes & ~POSTER_HAS_SUFFIX;
+        if (stored == null || affixes == 0) {
+            return stored;
+        }
+        return POSTER_PREFIXES[prefix] + stored
+                + ((affixes & POSTER_HAS_SUFFIX) != 0 ? POSTER_SUFFIX : "");
+    }
+
+    public String getImdbId(int position) {
+        final int digits = mImdbDigits[position];
+        if (digits == 0) {
+            return mRawImdbIds.get(position);
+        }
+        final String number = String.valueOf(mImdbNumbers[position]);
+        final StringBuilder builder = new StringBuilder(IMDB_ID_PREFIX.length() + digits);
+        builder.append(IMDB_ID_PREFIX);
+        for (int i = number.length(); i < digits; i++) {
+            builder.append('0');
+        }
+        return builder.append(number).toString();
+    }
+
+    public Type getType(int position) {
+        return TYPES[mTypes[position]];
+    }
+
+    public String getTypeText(int position) {
+        final Type type = getType(position);
+        return type == Type.OTHER ? mRawTypes.get(position) : type.getText();
+    }
+
+    /**
+     * @return first year of the item, or -1 if its year is not a plain year or year range
+     */
+    public int getStartYear(int position) {
+        return mStartYears[position];
+    }
+
+    /**
+     * @return last year of a finished range, the start year for a single year, or -1 if the range
+     * is still running or the year could not be parsed
+     */
+    public int getEndYear(int position) {
+        final short end = mEndYears[position];
+        if (mStartYears[position] == UNPACKED || end == OPEN_YEAR) {
+            return -1;
+        }
+        return end == SINGLE_YEAR ? mStartYears[position] : end;
+    }
+
+    public String getYear(int position) {
+        final short start = mStartYears[position];
+        if (start == UNPACKED) {
+            return mRawYears.get(position);
+        }
+        final short end = mEndYears[position];
+        final int key = (start << 16) | (end & 0xffff);
+        final int slot = (start * 31 + end) & (YEAR_TEXT.length - 1);
+        final YearText cached = YEAR_TEXT[slot];
+        if (cached != null && cached.key == key) {
+            return cached.text;
+        }
+        final String year;
+        if (end == SINGLE_YEAR) {
+            year = String.valueOf(start);
+        } else if (end == OPEN_YEAR) {
+            year = String.valueOf(start) + YEAR_SEPARATOR;
+        } else {
+            year = String.valueOf(start) + YEAR_SEPARATOR + end;
+        }
+        YEAR_TEXT[slot] = new YearText(key, year);
+        return year;
+    }
+
+    private void packPoster(int position, String poster) {
+        if (poster != null) {
+            for (int prefix = POSTER_PREFIXES.length - 1; prefix > 0; prefix--) {
+                if (poster.startsWith(POSTER_PREFIXES[prefix])) {
+                    int end = poster.length();
+                    int affixes = prefix;
+                    if (poster.endsWith(POSTER_SUFFIX)) {
+                        end -= POSTER_SUFFIX.length();
+                        affixes |= POSTER_HAS_SUFFIX;
+                    }
+                    mPosters[position] = mPool.add(
+                            poster.substring(POSTER_PREFIXES[prefix].length(), end));
+                    mPosterAffixes[position] = (byte) affixes;
+                    return;
+                }
+            }
+        }
+        mPosters[position] = mPool.add(poster);
+        mPosterAffixes[position] = 0;
+    }
+
+    private void packImdbId(int position, String imdbId) {
+        final int digits = imdbId != null ? imdbId.length() - IMDB_ID_PREFIX.length() : 0;
+        // 9 digits always fit in an int
+        if (digits > 0 && digits <= 9 && imdbId.startsWith(IMDB_ID_PREFIX)) {
+            int number = 0;
+            for (int i = IMDB_ID_PREFIX.length(); i < imdbId.length(); i++) {
+                final char c = imdbId.charAt(i);
+                if (c < '0' || c > '9') {
+                    number = -1;
+                    break;
+                }
+                number = number * 10 + (c - '0');
+            }
+            if (number >= 0) {
+                mImdbNumbers[position] = number;
+                mImdbDigits[position] = (byte) digits;
+                return;
+            }
+        }
+        mImdbNumbers[position] = 0;
+        mImdbDigits[position] = 0;
+        copyRawValuesIfShared();
+        mRawImdbIds.put(position, imdbId);
+    }
+
+    private void packType(int position, String text) {
+        final Type type = Type.fromText(text);
+        mTypes[position] = (byte) type.ordinal();
+        if (type == Type.OTHER) {
+            copyRawValuesIfShared();
+            mRawTypes.put(position, mPool.intern(text));
+        }
+    }
+
+    private void packYear(int position, String year) {
+        final int separator = year != null ? year.indexOf(YEAR_SEPARATOR) : -1;
+        final int start;
+        final int end;
+        if (separator < 0) {
+            start = parseYear(year);
+            end = SINGLE_YEAR;
+        } else {
+            start = parseYear(year.substring(0, separator));
+            end = separator == year.length() - 1
+                    ? OPEN_YEAR
+                    : parseYear(year.substring(separator + 1));
+        }
+        if (start > 0 && (end == SINGLE_YEAR || end == OPEN_YEAR || end > 0)) {
+            mStartYears[position] = (short) start;
+            mEndYears[position] = (short) end;
+        } else {
+            mStartYears[position] = UNPACKED;
+            mEndYears[position] = SINGLE_YEAR;
+            copyRawValuesIfShared();
+            mRawYears.put(position, mPool.intern(year));
+        }
+    }
+
+    /**
+     * @return the year, or -1 unless the text is exactly four digits
+     */
+    private static int parseYear(String text) {
+        if (text == null || text.length() != 4) {
+            return -1;
+        }
+        int year = 0;
+        for (int i = 0; i < 4; i++) {
+            final char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            year = year * 10 + (c - '0');
+        }
+        return year;
+    }
+
+    /**
+     * Copy the values kept on the side before changing them if a snapshot reads them.
+     */
+    private void copyRawValuesIfShared() {
+        if (mIsRawShared) {
+            mRawImdbIds = mRawImdbIds.clone();
+            mRawTypes = mRawTypes.clone();
+            mRawYears = mRawYears.clone();
+            mIsRawShared = false;
+        }
+    }
+
+    private void checkWritable() {
+        if (mIsSnapshot) {
+            throw new UnsupportedOperationException("snapshots are read-only");
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mTitles.length) {
+            return;
+        }
+        final int newCapacity = Math.max(capacity, mTitles.length + (mTitles.length >> 1));
+        mTitles = Arrays.copyOf(mTitles, newCapacity);
+        mPosters = Arrays.copyOf(mPosters, newCapacity);
+        mPosterAffixes = Arrays.copyOf(mPosterAffixes, newCapacity);
+        mImdbNumbers = Arrays.copyOf(mImdbNumbers, newCapacity);
+        mImdbDigits = Arrays.copyOf(mImdbDigits, newCapacity);
+        mTypes = Arrays.copyOf(mTypes, newCapacity);
+        mStartYears = Arrays.copyOf(mStartYears, newCapacity);
+        mEndYears = Arrays.copyOf(mEndYears, newCapacity);
+    }
+
+    private static final class YearText {
+        final int key;
+        final String text;
+
+        YearText(int key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+    /**
+     * De-duplicating pool of Strings addressed by index. Index 0 is reserved for null. The Strings
+     * are kept in an array that is replaced when full rather than written beyond its count, so a
+     * reader holding an earlier array still finds every String it was handed an index to.
+     */
+    private static final class StringPool {
+        private final Map<String, Integer> mIndices = new HashMap<>();
+        private String[] mStrings = new String[INITIAL_CAPACITY];
+        private int mCount = 1;
+
+        int add(String value) {
+            if (value == null) {
+                return 0;
+            }
+            Integer index = mIndices.get(value);
+            if (index == null) {
+                if (mCount == mStrings.length) {
+                    mStrings = Arrays.copyOf(mStrings, 2 * mStrings.length);
+                }
+                index = mCount++;
+                mStrings[index] = value;
+                mIndices.put(value, index);
+            }
+            return index;
+        }
+
+        /**
+         * @return the pooled instance equal to the value
+         */
+        String intern(String value) {
+            return mStrings[add(value)];
+        }
+
+        String[] getStrings() {
+            return mStrings;
+        }
+    }
+}
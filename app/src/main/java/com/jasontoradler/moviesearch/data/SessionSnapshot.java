@@ -0,0 +1,164 @@
+package com.jasontoradler.moviesearch.data;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The results of a title search as they were shown, along with the scroll position, so that the
+ * session can be restored after the process has been killed without searching again.
+ * <p>
+ * The file holds a header, in which every string is its length in UTF-8 bytes (-1 for null)
+ * followed by the bytes, followed by the items as an {@link OmdbCodec} record. It is read through
+ * a memory mapping and the items are decoded straight from it, so restoring does not copy the file
+ * through a stream buffer first.
+ * <p>
+ * {@link #of} may be called on any thread; {@link #write(File)} and {@link #read(File)} do disk
+ * I/O and belong on a background thread.
+ */
+public final class SessionSnapshot {
+
+    private static final int MAGIC = 0x4d535353;
+    /**
+     * Version 2 stores the items as an OmdbCodec record instead of column by column.
+     */
+    private static final int VERSION = 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public final String keyword;
+    public final int totalItems;
+    /**
+     * Adapter position of the first visible row.
+     */
+    public final int position;
+    /**
+     * Offset in pixels of the first visible row from the top of the list.
+     */
+    public final int offset;
+    private final List<SearchItem> mItems;
+
+    private SessionSnapshot(
+            String keyword,
+            int totalItems,
+            int position,
+            int offset,
+            List<SearchItem> items) {
+        this.keyword = keyword;
+        this.totalItems = totalItems;
+        this.position = position;
+        this.offset = offset;
+        mItems = items;
+    }
+
+    /**
+     * Copy the values of the results.
+     */
+    public static SessionSnapshot of(
+            ResultsModel.Snapshot results,
+            String keyword,
+            int totalItems,
+            int position,
+            int offset) {
+        return new SessionSnapshot(keyword, totalItems, position, offset,
+                new ArrayList<>(results.asList()));
+    }
+
+    public int size() {
+        return mItems.size();
+    }
+
+    /**
+     * @return the items, to be appended to a {@link ResultsModel}; favorites are not part of
+     * the snapshot
+     */
+    public List<SearchItem> toSearchItems() {
+        return mItems;
+    }
+
+    /**
+     * Write the snapshot to a temporary file and move it over the file, so that a reader never
+     * sees a partially written snapshot.
+     */
+    public void write(File file) throws IOException {
+        final File temp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, keyword);
+            out.writeInt(totalItems);
+            out.writeInt(position);
+            out.writeInt(offset);
+            out.write(OmdbCodec.encodeSearchItems(mItems));
+        } finally {
+            out.close();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("error replacing " + file);
+        }
+    }
+
+    /**
+     * @return the snapshot in the file, or null if there is none or it has another version
+     * @throws IOException if the file cannot be read or is corrupt
+     */
+    public static SessionSnapshot read(File file) throws IOException {
+        if (!file.exists()) {
+            return null;
+        }
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            // the mapping stays valid after the file is closed
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            final String keyword = readString(buffer);
+            final int totalItems = buffer.getInt();
+            final int position = buffer.getInt();
+            final int offset = buffer.getInt();
+            return new SessionSnapshot(keyword, totalItems, position, offset,
+                    OmdbCodec.decodeSearchItems(buffer));
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated snapshot: " + file);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            final byte[] bytes = value.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buffer) throws IOException {
+        final int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new IOException("corrupt snapshot: string of " + length + " bytes");
+        }
+        final byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
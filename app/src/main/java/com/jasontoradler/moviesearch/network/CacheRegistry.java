@@ -0,0 +1,121 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.content.ComponentCallbacks2;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Central registry of the caches owned by {@link SearchTool}. It listens to the memory callbacks of
+ * the application and shrinks every registered cache in proportion to the trim level, so that the
+ * process is less likely to be killed in the background and keeps as much as it safely can.
+ * <p>
+ * Trim callbacks arrive on the main thread, so caches must trim quickly and without disk I/O.
+ */
+public final class CacheRegistry implements ComponentCallbacks2 {
+
+    private static final String TAG = "CacheRegistry";
+
+    private final List<TrimmableCache> mCaches = new ArrayList<>();
+
+    public void register(TrimmableCache cache) {
+        synchronized (mCaches) {
+            mCaches.add(cache);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        trimAll(fractionToKeep(level), "onTrimMemory(" + level + ")");
+    }
+
+    @Override
+    public void onLowMemory() {
+        trimAll(0f, "onLowMemory");
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * @return fraction of their maximum size the caches may keep at the given trim level
+     */
+    static float fractionToKeep(int level) {
+        if (level >= TRIM_MEMORY_COMPLETE) {
+            // next in line to be killed
+            return 0f;
+        } else if (level >= TRIM_MEMORY_MODERATE) {
+            return 0.1f;
+        } else if (level >= TRIM_MEMORY_BACKGROUND) {
+            return 0.25f;
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            return 0.5f;
+        } else if (level >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0.25f;
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            return 0.5f;
+        } else if (level >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return 0.75f;
+        }
+        return 1f;
+    }
+
+    private void trimAll(float fraction, String reason) {
+        Log.d(TAG, reason + ": trimming caches to " + fraction + ", before: " + dump());
+        synchronized (mCaches) {
+            for (TrimmableCache cache : mCaches) {
+                cache.trimToFraction(fraction);
+            }
+        }
+        Log.d(TAG, "after: " + dump());
+    }
+
+    /**
+     * @return approximate number of bytes held by all registered caches
+     */
+    public long getFootprint() {
+        long footprint = 0;
+        synchronized (mCaches) {
+            for (TrimmableCache cache : mCaches) {
+                footprint += cache.getFootprint();
+            }
+        }
+        return footprint;
+    }
+
+    /**
+     * @return human-readable footprint of each registered cache
+     */
+    public String dump() {
+        final StringBuilder builder = new StringBuilder("{");
+        synchronized (mCaches) {
+            for (TrimmableCache cache : mCaches) {
+                if (builder.length() > 1) {
+                    builder.append(", ");
+                }
+                builder.append(cache.getName()).append('=').append(cache.getFootprint());
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    /**
+     * A cache that can report its size and release memory on demand.
+     */
+    public interface TrimmableCache {
+        String getName();
+
+        /**
+         * @return approximate number of bytes of memory currently held
+         */
+        long getFootprint();
+
+        /**
+         * Shrink to the given fraction of the maximum size; 0 empties the cache.
+         */
+        void trimToFraction(float fraction);
+    }
+}
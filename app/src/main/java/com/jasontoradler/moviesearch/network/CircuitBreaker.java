@@ -0,0 +1,159 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.android.volley.NetworkError;
+import com.android.volley.TimeoutError;
+import com.android.volley.VolleyError;
+
+import java.util.Random;
+
+/**
+ * Circuit breaker of a single endpoint. After {@link #FAILURE_THRESHOLD} consecutive transient
+ * failures the breaker opens and requests are refused, so that callers fall back to cached
+ * responses instead of piling more requests onto a network that is not answering. Once
+ * {@link #OPEN_MS} have passed a single trial request is let through; its success closes the
+ * breaker, its failure opens it again.
+ * <p>
+ * Also computes the jittered exponential backoff between retries of a failed request.
+ * <p>
+ * Not thread-safe; all methods must be called on the main thread.
+ */
+final class CircuitBreaker {
+
+    static final int FAILURE_THRESHOLD = 3;
+    static final long OPEN_MS = 15000;
+
+    private static final String TAG = "CircuitBreaker";
+    private static final long BACKOFF_BASE_MS = 500;
+    private static final long BACKOFF_MAX_MS = 30000;
+
+    enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String mName;
+    private final Random mRandom = new Random();
+    private State mState = State.CLOSED;
+    private int mConsecutiveFailures;
+    private long mOpenedAt;
+    private long mTrialStartedAt;
+    private boolean mIsTrialInFlight;
+    private int mTripCount;
+    private int mRejectedCount;
+    private int mRetryCount;
+
+    CircuitBreaker(String name) {
+        mName = name;
+    }
+
+    /**
+     * @return true if a request may be sent now; in the half-open state only the first caller is
+     * allowed through, as the trial
+     */
+    boolean allowRequest() {
+        final long now = SystemClock.elapsedRealtime();
+        if (mState == State.OPEN && now - mOpenedAt >= OPEN_MS) {
+            Log.d(TAG, mName + ": half-open");
+            mState = State.HALF_OPEN;
+            mIsTrialInFlight = false;
+        }
+        if (mState == State.CLOSED) {
+            return true;
+        }
+        // a trial that was cancelled never reports back
+        if (mState == State.HALF_OPEN && (!mIsTrialInFlight || now - mTrialStartedAt >= OPEN_MS)) {
+            mIsTrialInFlight = true;
+            mTrialStartedAt = now;
+            return true;
+        }
+        mRejectedCount++;
+        return false;
+    }
+
+    boolean isClosed() {
+        return mState == State.CLOSED;
+    }
+
+    /**
+     * @return milliseconds until the open breaker lets a trial request through, or 0
+     */
+    long getRemainingOpenMs() {
+        return mState == State.OPEN
+                ? Math.max(0, mOpenedAt + OPEN_MS - SystemClock.elapsedRealtime())
+                : 0;
+    }
+
+    void onSuccess() {
+        if (mState != State.CLOSED) {
+            Log.d(TAG, mName + ": closed");
+        }
+        mState = State.CLOSED;
+        mConsecutiveFailures = 0;
+        mIsTrialInFlight = false;
+    }
+
+    void onFailure(VolleyError error) {
+        if (!isTransient(error)) {
+            // the server answered, so the endpoint itself is reachable
+            onSuccess();
+            return;
+        }
+        mConsecutiveFailures++;
+        if (mState == State.HALF_OPEN || mConsecutiveFailures >= FAILURE_THRESHOLD) {
+            if (mState != State.OPEN) {
+                Log.d(TAG, mName + ": open after " + mConsecutiveFailures + " failures");
+                mTripCount++;
+            }
+            mState = State.OPEN;
+            mOpenedAt = SystemClock.elapsedRealtime();
+            mIsTrialInFlight = false;
+        }
+    }
+
+    /**
+     * @param retry number of retries made so far
+     * @return delay before the next retry, drawn uniformly between zero and an exponentially
+     * growing cap ("full jitter"), so that clients that failed together do not retry together
+     */
+    long nextRetryDelayMs(int retry) {
+        mRetryCount++;
+        final long cap = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << Math.min(retry, 16));
+        return (long) (mRandom.nextDouble() * cap);
+    }
+
+    @Override
+    public String toString() {
+        return mName + "{state=" + mState
+                + ", trips=" + mTripCount
+                + ", rejected=" + mRejectedCount
+                + ", retries=" + mRetryCount + "}";
+    }
+
+    /**
+     * @return true if the error may go away by itself: no connection, a timeout, or an overloaded
+     * or failing server
+     */
+    static boolean isTransient(VolleyError error) {
+        if (error instanceof NetworkError || error instanceof TimeoutError) {
+            return true;
+        }
+        if (error instanceof OpenError || error.networkResponse == null) {
+            return false;
+        }
+        final int statusCode = error.networkResponse.statusCode;
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    /**
+     * Reported instead of sending a request while the breaker is open.
+     */
+    static final class OpenError extends VolleyError {
+        OpenError(CircuitBreaker breaker) {
+            super(breaker.mName + " circuit open");
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.android.volley.VolleyError;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Looks up the details of many titles as one batch. Details that are already in memory are
+ * delivered right away; the rest are looked up through the {@link DetailsLoader}, response cache
+ * first, with a bounded number of lookups in flight so that the batch is pipelined without
+ * crowding out other requests. Each result is delivered as soon as it arrives, in whatever order
+ * that is, followed by the progress of the batch.
+ * <p>
+ * The batch owns its lookups: cancelling it detaches them, which cancels those that no one else is
+ * waiting for.
+ * <p>
+ * Not thread-safe; all methods must be called on the main thread.
+ */
+final class DetailsBatch {
+
+    private static final String TAG = "DetailsBatch";
+
+    /**
+     * Loads the details of single titles on behalf of a batch.
+     */
+    interface DetailsLoader {
+        /**
+         * @return the details of the title if they are in memory, or null
+         */
+        MovieDetails getCached(String imdbId);
+
+        /**
+         * Look up the details of the title; the callback is called on the main thread, and never
+         * after {@link #cancelLoads(Object)} for the owner.
+         */
+        void load(String imdbId, Object owner, RequestCoalescer.Callback<MovieDetails> callback);
+
+        /**
+         * Detach every lookup of the owner, cancelling those no one else is waiting for.
+         */
+        void cancelLoads(Object owner);
+    }
+
+    /**
+     * Receives the results of a batch on the main thread.
+     */
+    interface Listener {
+        /**
+         * @param movieDetails the details, which may be an unsuccessful OMDb response, e.g. for
+         *                     an unknown imdbID
+         */
+        void onDetails(String imdbId, MovieDetails movieDetails);
+
+        void onError(String imdbId, VolleyError error);
+
+        /**
+         * Called after each result.
+         *
+         * @param done  number of titles that have a result, successful or not
+         * @param total number of distinct titles in the batch
+         */
+        void onProgress(int done, int total);
+
+        /**
+         * Called once every title has a result; not called if the batch is cancelled.
+         */
+        void onComplete();
+    }
+
+    private final DetailsLoader mLoader;
+    private final Listener mListener;
+    private final int mMaxInFlight;
+    private final ArrayDeque<String> mPending = new ArrayDeque<>();
+    private final Set<String> mInFlight = new HashSet<>();
+    private final int mTotal;
+    private int mDone;
+    private int mFailed;
+    private int mMemoryHits;
+    private boolean mIsCancelled;
+    private long mStartedAt;
+
+    /**
+     * @param imdbIds     titles to look up; duplicates and empty ids are skipped
+     * @param maxInFlight number of lookups to keep in flight at most
+     */
+    DetailsBatch(
+            Collection<String> imdbIds,
+            int maxInFlight,
+            DetailsLoader loader,
+            Listener listener) {
+        for (String imdbId : new LinkedHashSet<>(imdbIds)) {
+            if (!TextUtils.isEmpty(imdbId)) {
+                mPending.add(imdbId);
+            }
+        }
+        mTotal = mPending.size();
+        mMaxInFlight = Math.max(1, maxInFlight);
+        mLoader = loader;
+        mListener = listener;
+    }
+
+    /**
+     * Deliver the details that are in memory and start looking up the rest.
+     */
+    void start() {
+        mStartedAt = SystemClock.elapsedRealtime();
+        final Map<String, MovieDetails> hits = new LinkedHashMap<>();
+        final Iterator<String> pending = mPending.iterator();
+        while (pending.hasNext()) {
+            final String imdbId = pending.next();
+            final MovieDetails cached = mLoader.getCached(imdbId);
+            if (cached != null) {
+                hits.put(imdbId, cached);
+                pending.remove();
+            }
+        }
+        mMemoryHits = hits.size();
+        // the first hit already starts the lookups of the misses
+        for (Map.Entry<String, MovieDetails> hit : hits.entrySet()) {
+            onResult(hit.getKey(), hit.getValue(), null);
+        }
+        fill();
+        if (mTotal == 0) {
+            finish();
+        }
+    }
+
+    /**
+     * Stop delivering results and cancel the lookups in flight, unless someone else is waiting for
+     * them.
+     */
+    public void cancel() {
+        if (mIsCancelled || isDone()) {
+            return;
+        }
+        Log.d(TAG, "cancelled after " + mDone + " of " + mTotal);
+        mIsCancelled = true;
+        mPending.clear();
+        mInFlight.clear();
+        mLoader.cancelLoads(this);
+    }
+
+    public int getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * @return number of titles that have a result so far, successful or not
+     */
+    public int getDone() {
+        return mDone;
+    }
+
+    public int getFailed() {
+        return mFailed;
+    }
+
+    public boolean isDone() {
+        return mDone == mTotal;
+    }
+
+    public boolean isCancelled() {
+        return mIsCancelled;
+    }
+
+    private void fill() {
+        while (!mIsCancelled && mInFlight.size() < mMaxInFlight && !mPending.isEmpty()) {
+            final String imdbId = mPending.poll();
+            mInFlight.add(imdbId);
+            mLoader.load(imdbId, this, new RequestCoalescer.Callback<MovieDetails>() {
+                @Override
+                public void onSuccess(MovieDetails movieDetails) {
+                    onResult(imdbId, movieDetails, null);
+                }
+
+                @Override
+                public void onError(VolleyError error) {
+                    onResult(imdbId, null, error);
+                }
+            });
+        }
+    }
+
+    private void onResult(String imdbId, MovieDetails movieDetails, VolleyError error) {
+        if (mIsCancelled) {
+            return;
+        }
+        mInFlight.remove(imdbId);
+        mDone++;
+        if (error != null) {
+            mFailed++;
+            mListener.onError(imdbId, error);
+        } else {
+            mListener.onDetails(imdbId, movieDetails);
+        }
+        if (mIsCancelled) {
+            // the listener cancelled the batch
+            return;
+        }
+        mListener.onProgress(mDone, mTotal);
+        fill();
+        if (isDone()) {
+            finish();
+        }
+    }
+
+    private void finish() {
+        Log.d(TAG, mTotal + " titles in " + (SystemClock.elapsedRealtime() - mStartedAt)
+                + " ms: " + mMemoryHits + " from memory, " + mFailed + " failed");
+        mListener.onComplete();
+    }
+}
@@ -0,0 +1,132 @@
+package com.jasontoradler.moviesearch.network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of non-negative values with log-linear buckets, in the spirit of
+ * HdrHistogram: every power of two is split into {@link #SUB_BUCKETS} equal buckets, so any
+ * recorded value is known within 1/8 of its magnitude while the whole range of a long fits in a
+ * few hundred counters. Values can be recorded from any thread without blocking.
+ */
+public final class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final String mName;
+    private final String mUnit;
+    private final AtomicLongArray mCounts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * @param unit unit of the recorded values, only used for display
+     */
+    public Histogram(String name, String unit) {
+        mName = name;
+        mUnit = unit;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        mCounts.incrementAndGet(bucketIndex(value));
+        mCount.incrementAndGet();
+        mSum.addAndGet(value);
+        long max;
+        while (value > (max = mMax.get()) && !mMax.compareAndSet(max, value)) {
+            // lost the race with another thread, try again
+        }
+    }
+
+    public long getCount() {
+        return mCount.get();
+    }
+
+    public long getMax() {
+        return mMax.get();
+    }
+
+    public double getMean() {
+        final long count = mCount.get();
+        return count > 0 ? (double) mSum.get() / count : 0;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return value below which the given percentage of the recorded values fall, within the
+     * precision of the buckets, or 0 if nothing was recorded
+     */
+    public long getPercentile(double percentile) {
+        final long count = mCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += mCounts.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketMidpoint(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Forget every recorded value. Values recorded concurrently may be partially kept.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            mCounts.set(i, 0);
+        }
+        mCount.set(0);
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketLowerBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int magnitude = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final long subBucket = index % SUB_BUCKETS;
+        return (SUB_BUCKETS | subBucket) << (magnitude - SUB_BUCKET_BITS);
+    }
+
+    private static long bucketMidpoint(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final long lower = bucketLowerBound(index);
+        final long width = 1L << (index / SUB_BUCKETS - 1);
+        return lower + width / 2;
+    }
+
+    @Override
+    public String toString() {
+        return mName + "{count=" + getCount()
+                + ", mean=" + Math.round(getMean()) + mUnit
+                + ", p50=" + getPercentile(50) + mUnit
+                + ", p90=" + getPercentile(90) + mUnit
+                + ", p99=" + getPercentile(99) + mUnit
+                + ", max=" + getMax() + mUnit + "}";
+    }
+}
@@ -0,0 +1,41 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.Response;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+import com.jasontoradler.moviesearch.data.OmdbCodec;
+
+import java.io.IOException;
+
+/**
+ * Fetch the details of a single title by its IMDB id.
+ */
+final class IdSearchRequest extends OmdbRequest<MovieDetails> {
+
+    IdSearchRequest(
+            String url,
+            ResponseCache responseCache,
+            String cacheKey,
+            Response.Listener<MovieDetails> listener,
+            Response.ErrorListener errorListener) {
+        super(url, responseCache, cacheKey, listener, errorListener);
+    }
+
+    @Override
+    MovieDetails parse(byte[] data) throws IOException {
+        return OmdbParser.parseMovieDetails(data);
+    }
+
+    @Override
+    byte[] encode(MovieDetails result) {
+        return OmdbCodec.encodeMovieDetails(result);
+    }
+
+    @Override
+    boolean isSuccess(MovieDetails result) {
+        return isSuccessful(result);
+    }
+
+    static boolean isSuccessful(MovieDetails result) {
+        return result != null && "true".equalsIgnoreCase(result.response);
+    }
+}
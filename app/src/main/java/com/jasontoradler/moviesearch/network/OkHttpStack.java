@@ -0,0 +1,247 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.AuthFailureError;
+import com.android.volley.Request;
+import com.android.volley.toolbox.HttpStack;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.ProtocolVersion;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.EventListener;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Volley HttpStack on top of a shared OkHttp client. All requests go through one connection pool,
+ * so consecutive requests to a host reuse its connection, and concurrent ones are multiplexed over
+ * a single HTTP/2 connection where the server supports it. OkHttp asks for gzip-compressed
+ * responses and transparently decompresses them. The DNS, connect and time-to-first-byte phases
+ * of every call are recorded in {@link PerfMetrics}.
+ */
+final class OkHttpStack implements HttpStack {
+
+    private static final int MAX_IDLE_CONNECTIONS = 5;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private final OkHttpClient mClient;
+    /**
+     * Clients derived from {@link #mClient} by timeout. Requests only use a handful of timeouts,
+     * the default and those their retry policies grow it to, so this stays small.
+     */
+    private final Map<Integer, OkHttpClient> mClientsByTimeout = new HashMap<>();
+
+    OkHttpStack() {
+        mClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(
+                        MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                // Volley retries according to the request's retry policy
+                .retryOnConnectionFailure(false)
+                .eventListenerFactory(new EventListener.Factory() {
+                    @Override
+                    public EventListener create(Call call) {
+                        return new TimingListener();
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * Open a connection to each host in the background, so that the first real requests find the
+     * DNS lookup and TLS handshake already done.
+     */
+    void warmUp(String... urls) {
+        for (final String url : urls) {
+            mClient.newCall(new okhttp3.Request.Builder().url(url).head().build())
+                    .enqueue(new Callback() {
+                        @Override
+                        public void onFailure(Call call, IOException e) {
+                            // nothing lost, the first real request connects instead
+                        }
+
+                        @Override
+                        public void onResponse(Call call, Response response) {
+                            // the connection returns to the pool once the response is closed
+                            response.close();
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return number of connections in the pool, idle or in use
+     */
+    int getConnectionCount() {
+        return mClient.connectionPool().connectionCount();
+    }
+
+    @Override
+    public HttpResponse performRequest(Request<?> request, Map<String, String> additionalHeaders)
+            throws IOException, AuthFailureError {
+        final OkHttpClient client = clientFor(request.getTimeoutMs());
+        final okhttp3.Request.Builder builder = new okhttp3.Request.Builder()
+                .url(request.getUrl());
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        for (Map.Entry<String, String> header : additionalHeaders.entrySet()) {
+            builder.header(header.getKey(), header.getValue());
+        }
+        setMethod(builder, request);
+
+        final Response response = client.newCall(builder.build()).execute();
+        return toHttpResponse(response);
+    }
+
+    /**
+     * @return the client to make a request with the given timeout with
+     */
+    private OkHttpClient clientFor(int timeoutMs) {
+        synchronized (mClientsByTimeout) {
+            OkHttpClient client = mClientsByTimeout.get(timeoutMs);
+            if (client == null) {
+                // derived clients share the connection pool and dispatcher of the original one
+                client = mClient.newBuilder()
+                        .connectTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                        .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                        .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                        .build();
+                mClientsByTimeout.put(timeoutMs, client);
+            }
+            return client;
+        }
+    }
+
+    private static void setMethod(okhttp3.Request.Builder builder, Request<?> request)
+            throws AuthFailureError {
+        switch (request.getMethod()) {
+            case Request.Method.DEPRECATED_GET_OR_POST:
+            case Request.Method.GET:
+                builder.get();
+                break;
+            case Request.Method.HEAD:
+                builder.head();
+                break;
+            case Request.Method.DELETE:
+                builder.delete();
+                break;
+            case Request.Method.POST:
+                builder.post(body(request));
+                break;
+            case Request.Method.PUT:
+                builder.put(body(request));
+                break;
+            case Request.Method.PATCH:
+                builder.patch(body(request));
+                break;
+            case Request.Method.OPTIONS:
+                builder.method("OPTIONS", null);
+                break;
+            case Request.Method.TRACE:
+                builder.method("TRACE", null);
+                break;
+            default:
+                throw new IllegalStateException("Unknown method type " + request.getMethod());
+        }
+    }
+
+    private static RequestBody body(Request<?> request) throws AuthFailureError {
+        final byte[] body = request.getBody();
+        return RequestBody.create(MediaType.parse(request.getBodyContentType()),
+                body != null ? body : new byte[0]);
+    }
+
+    private static HttpResponse toHttpResponse(Response response) {
+        final ProtocolVersion protocolVersion = response.protocol() == Protocol.HTTP_2
+                ? new ProtocolVersion("HTTP", 2, 0)
+                : new ProtocolVersion("HTTP", 1, 1);
+        final BasicHttpResponse httpResponse = new BasicHttpResponse(
+                new BasicStatusLine(protocolVersion, response.code(), response.message()));
+
+        // BasicNetwork reads and closes the stream, which releases the connection
+        final ResponseBody body = response.body();
+        final BasicHttpEntity entity = new BasicHttpEntity();
+        if (body != null) {
+            entity.setContent(body.byteStream());
+            entity.setContentLength(body.contentLength());
+            if (body.contentType() != null) {
+                entity.setContentType(body.contentType().toString());
+            }
+        }
+        entity.setContentEncoding(response.header("Content-Encoding"));
+        httpResponse.setEntity(entity);
+
+        final Headers headers = response.headers();
+        for (int i = 0; i < headers.size(); i++) {
+            httpResponse.addHeader(headers.name(i), headers.value(i));
+        }
+        return httpResponse;
+    }
+
+    /**
+     * Records the phases of a single call.
+     */
+    private static final class TimingListener extends EventListener {
+
+        private final PerfMetrics mMetrics = PerfMetrics.instance();
+        private long mCallStart;
+        private long mDnsStart;
+        private long mConnectStart;
+
+        @Override
+        public void callStart(Call call) {
+            mCallStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            mDnsStart = System.nanoTime();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+            mMetrics.dnsMs.record(millisSince(mDnsStart));
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            mConnectStart = System.nanoTime();
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy,
+                Protocol protocol) {
+            mMetrics.connectMs.record(millisSince(mConnectStart));
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            mMetrics.ttfbMs.record(millisSince(mCallStart));
+        }
+
+        private static long millisSince(long start) {
+            return (System.nanoTime() - start) / 1000000;
+        }
+    }
+}
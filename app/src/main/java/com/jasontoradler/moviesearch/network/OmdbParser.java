@@ -0,0 +1,260 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+import com.jasontoradler.moviesearch.data.SearchItem;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses OMDb responses with Jackson's streaming {@link JsonParser} straight into the data
+ * classes, without building an intermediate tree or a new ObjectMapper per response. The
+ * underlying {@link JsonFactory} is thread-safe and shared, so the methods may be called from any
+ * thread.
+ */
+public final class OmdbParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private OmdbParser() {
+    }
+
+    public static SearchResults parseSearchResults(String json) throws IOException {
+        return readSearchResults(JSON_FACTORY.createParser(json));
+    }
+
+    public static SearchResults parseSearchResults(byte[] json) throws IOException {
+        return readSearchResults(JSON_FACTORY.createParser(json));
+    }
+
+    /**
+     * Read the details of a single title. "Response", "Poster" and "Title" are assigned to their
+     * own fields and the remaining String values are added as text fields in document order, the
+     * numeric ones also parsed into their typed fields. The Ratings array is read into
+     * {@link MovieDetails#ratings}; other values that are not Strings are skipped.
+     */
+    public static MovieDetails parseMovieDetails(String json) throws IOException {
+        return readMovieDetails(JSON_FACTORY.createParser(json));
+    }
+
+    public static MovieDetails parseMovieDetails(byte[] json) throws IOException {
+        return readMovieDetails(JSON_FACTORY.createParser(json));
+    }
+
+    private static SearchResults readSearchResults(JsonParser parser) throws IOException {
+        try {
+            expectObject(parser, parser.nextToken());
+            final SearchResults searchResults = new SearchResults();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                switch (name) {
+                    case "Search":
+                        searchResults.Search = readSearchItems(parser, token);
+                        break;
+                    case "totalResults":
+                        searchResults.totalResults = parser.getValueAsInt();
+                        break;
+                    case "Response":
+                        searchResults.Response = parser.getValueAsString();
+                        break;
+                    case "Error":
+                        searchResults.Error = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            return searchResults;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static ArrayList<SearchItem> readSearchItems(JsonParser parser, JsonToken token)
+            throws IOException {
+        if (token != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return null;
+        }
+        final ArrayList<SearchItem> items = new ArrayList<>();
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            expectObject(parser, token);
+            final SearchItem item = new SearchItem();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                parser.nextToken();
+                switch (name) {
+                    case "Title":
+                        item.Title = parser.getValueAsString();
+                        break;
+                    case "Year":
+                        item.Year = parser.getValueAsString();
+                        break;
+                    case "imdbID":
+                        item.imdbID = parser.getValueAsString();
+                        break;
+                    case "Type":
+                        item.Type = parser.getValueAsString();
+                        break;
+                    case "Poster":
+                        item.Poster = parser.getValueAsString();
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static MovieDetails readMovieDetails(JsonParser parser) throws IOException {
+        try {
+            expectObject(parser, parser.nextToken());
+            final MovieDetails movieDetails = new MovieDetails();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                final JsonToken token = parser.nextToken();
+                if (token == JsonToken.START_ARRAY && "Ratings".equals(name)) {
+                    readRatings(parser, movieDetails.ratings);
+                    continue;
+                }
+                if (token != JsonToken.VALUE_STRING) {
+                    parser.skipChildren();
+                    continue;
+                }
+                final String value = parser.getText();
+                switch (name) {
+                    case "Response":
+                        movieDetails.response = value;
+                        break;
+                    case "Poster":
+                        movieDetails.poster = value;
+                        break;
+                    case "Title":
+                        movieDetails.title = value;
+                        break;
+                    default:
+                        movieDetails.addField(name, value);
+                        readNumericField(movieDetails, name, value);
+                        break;
+                }
+            }
+            return movieDetails;
+        } finally {
+            parser.close();
+        }
+    }
+
+    private static void readRatings(JsonParser parser, List<MovieDetails.Rating> ratings)
+            throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            String source = null;
+            String value = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                final String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("Source".equals(name)) {
+                    source = parser.getValueAsString();
+                } else if ("Value".equals(name)) {
+                    value = parser.getValueAsString();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            ratings.add(new MovieDetails.Rating(source, value));
+        }
+    }
+
+    /**
+     * Parse the value of a numeric field into its typed field of the details; values such as
+     * "N/A" leave it unknown.
+     */
+    private static void readNumericField(MovieDetails movieDetails, String name, String value) {
+        switch (name) {
+            case "Year":
+                readYears(movieDetails, value);
+                break;
+            case "Runtime":
+                // e.g. "124 min"
+                movieDetails.runtimeMinutes = parseInt(value);
+                break;
+            case "Metascore":
+                movieDetails.metascore = parseInt(value);
+                break;
+            case "imdbRating":
+                if (parseInt(value) != MovieDetails.UNKNOWN) {
+                    try {
+                        movieDetails.imdbRating = Float.parseFloat(value);
+                    } catch (NumberFormatException e) {
+                        // stays unknown
+                    }
+                }
+                break;
+            case "imdbVotes":
+                // e.g. "211,530"
+                movieDetails.imdbVotes = parseInt(value);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Read a year ("2002") or range of years ("2010-2015" or "2010-", with an en dash).
+     */
+    private static void readYears(MovieDetails movieDetails, String value) {
+        final int separator = value.indexOf('\u2013');
+        if (separator < 0) {
+            movieDetails.startYear = parseInt(value);
+            movieDetails.endYear = movieDetails.startYear;
+        } else {
+            movieDetails.startYear = parseInt(value.substring(0, separator));
+            movieDetails.endYear = separator < value.length() - 1
+                    ? parseInt(value.substring(separator + 1))
+                    : MovieDetails.UNKNOWN;
+        }
+    }
+
+    /**
+     * @return the number the text starts with, ignoring thousands separators, or
+     * {@link MovieDetails#UNKNOWN} if it does not start with a digit or the number does not fit
+     */
+    private static int parseInt(String text) {
+        long number = 0;
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                number = number * 10 + (c - '0');
+                if (number > Integer.MAX_VALUE) {
+                    return MovieDetails.UNKNOWN;
+                }
+                digits++;
+            } else if (c != ',' || digits == 0) {
+                break;
+            }
+        }
+        return digits > 0 ? (int) number : MovieDetails.UNKNOWN;
+    }
+
+    private static void expectObject(JsonParser parser, JsonToken token) throws IOException {
+        if (token != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "expected a JSON object but found " + token);
+        }
+    }
+}
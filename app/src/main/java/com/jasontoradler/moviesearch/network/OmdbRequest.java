@@ -0,0 +1,107 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+
+import java.io.IOException;
+
+/**
+ * Base class of the OMDb requests. The response body is parsed into its typed result in
+ * {@link #parseNetworkResponse(NetworkResponse)}, which Volley runs on a network dispatcher thread,
+ * so the main thread only receives ready-made objects. Successful results are also encoded and
+ * written to the {@link ResponseCache} from the dispatcher thread.
+ *
+ * @param <T> type of the parsed response
+ */
+abstract class OmdbRequest<T> extends Request<T> {
+
+    private final Response.Listener<T> mListener;
+    private final ResponseCache mResponseCache;
+    private final String mCacheKey;
+    private Priority mPriority = Priority.NORMAL;
+    private long mQueuedAtNanos;
+
+    OmdbRequest(
+            String url,
+            ResponseCache responseCache,
+            String cacheKey,
+            Response.Listener<T> listener,
+            Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        mListener = listener;
+        mResponseCache = responseCache;
+        mCacheKey = cacheKey;
+        // responses are cached by ResponseCache rather than by Volley's HTTP cache
+        setShouldCache(false);
+        // SearchTool retries with backoff instead of Volley's immediate retry
+        setRetryPolicy(new DefaultRetryPolicy(DefaultRetryPolicy.DEFAULT_TIMEOUT_MS, 0,
+                DefaultRetryPolicy.DEFAULT_BACKOFF_MULT));
+    }
+
+    /**
+     * Must be set before the request is added to the queue; afterwards only
+     * {@link PriorityRequestQueue#expedite} may change it, while the request is still held back.
+     */
+    void setPriority(Priority priority) {
+        mPriority = priority;
+    }
+
+    @Override
+    public Priority getPriority() {
+        return mPriority;
+    }
+
+    @Override
+    public void addMarker(String tag) {
+        super.addMarker(tag);
+        if (PerfMetrics.MARKER_QUEUED.equals(tag)) {
+            mQueuedAtNanos = System.nanoTime();
+        } else if (PerfMetrics.MARKER_DISPATCHED.equals(tag) && mQueuedAtNanos != 0) {
+            PerfMetrics.instance().queueWaitMs.record(
+                    (System.nanoTime() - mQueuedAtNanos) / 1000000);
+        }
+    }
+
+    @Override
+    protected Response<T> parseNetworkResponse(NetworkResponse response) {
+        try {
+            final long start = System.nanoTime();
+            final T result = parse(response.data);
+            PerfMetrics.instance().parseUs.record((System.nanoTime() - start) / 1000);
+            if (mResponseCache != null && isSuccess(result)) {
+                final byte[] encoded = encode(result);
+                PerfMetrics.instance().cacheBytes.record(encoded.length);
+                mResponseCache.put(mCacheKey, encoded);
+            }
+            return Response.success(result, null);
+        } catch (IOException e) {
+            return Response.error(new ParseError(e));
+        }
+    }
+
+    @Override
+    protected void deliverResponse(T response) {
+        if (mListener != null) {
+            mListener.onResponse(response);
+        }
+    }
+
+    /**
+     * Convert the raw response body. Called on a network dispatcher thread.
+     */
+    abstract T parse(byte[] data) throws IOException;
+
+    /**
+     * Convert a successful result into the form it is cached in. Called on a network dispatcher
+     * thread.
+     */
+    abstract byte[] encode(T result);
+
+    /**
+     * @return true if the parsed response holds real results that are worth caching
+     */
+    abstract boolean isSuccess(T result);
+}
@@ -0,0 +1,210 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.android.volley.VolleyError;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schedules the title search pages of a keyword so that a window of pages beyond the one the user
+ * is waiting for is always in flight. Pages are requested concurrently, but responses that arrive
+ * out of order are held back and handed to the {@link PageSink} strictly in page order. Changing
+ * the keyword cancels every outstanding load of the previous keyword and discards late responses.
+ * <p>
+ * Not thread-safe; all methods must be called on the main thread.
+ */
+final class PagePrefetcher {
+
+    static final int PAGE_SIZE = 10;
+
+    private static final String TAG = "PagePrefetcher";
+
+    private final PageLoader mLoader;
+    private final PageSink mSink;
+    private final SparseArray<SearchResults> mPendingPages = new SparseArray<>();
+    private final List<Integer> mFailedPages = new ArrayList<>();
+    private int mWindow;
+
+    private String mKeyword;
+    private Object mGeneration;
+    /**
+     * Number of pages the keyword has, or -1 until the first page arrives.
+     */
+    private int mTotalPages;
+    private int mWantedPage;
+    private int mLastRequestedPage;
+    private int mNextPageToDeliver;
+
+    /**
+     * @param window number of pages to keep in flight beyond the page the user is waiting for
+     */
+    PagePrefetcher(int window, PageLoader loader, PageSink sink) {
+        mWindow = window;
+        mLoader = loader;
+        mSink = sink;
+        reset(null);
+    }
+
+    void setWindow(int window) {
+        mWindow = Math.max(0, window);
+        fillWindow();
+    }
+
+    /**
+     * Make sure the given page of the keyword, and the prefetch window beyond it, are loaded or
+     * being loaded. Switching to a different keyword starts over at the first page.
+     */
+    void request(String keyword, int page) {
+        if (!TextUtils.equals(keyword, mKeyword)) {
+            reset(keyword);
+        }
+        // the user always needs at least the first page that has not been delivered yet
+        final int previousWantedPage = mWantedPage;
+        mWantedPage = Math.max(mWantedPage, Math.max(page, mNextPageToDeliver));
+        retryFailedPages();
+        // pages that were prefetched so far are now awaited
+        for (int awaited = Math.max(previousWantedPage + 1, mNextPageToDeliver);
+                awaited <= Math.min(mWantedPage, mLastRequestedPage); awaited++) {
+            if (mPendingPages.get(awaited) == null) {
+                mLoader.expeditePage(mKeyword, awaited, mGeneration);
+            }
+        }
+        fillWindow();
+    }
+
+    /**
+     * Continue a keyword whose first pages were delivered earlier, e.g. by a previous process,
+     * without loading them again. Nothing is requested until the next call to
+     * {@link #request(String, int)}.
+     *
+     * @param deliveredPages number of pages, from the first on, the results already hold
+     * @param totalResults   number of results the keyword has
+     */
+    void resume(String keyword, int deliveredPages, int totalResults) {
+        reset(keyword);
+        mTotalPages = (totalResults + PAGE_SIZE - 1) / PAGE_SIZE;
+        mWantedPage = deliveredPages;
+        mLastRequestedPage = deliveredPages;
+        mNextPageToDeliver = deliveredPages + 1;
+    }
+
+    /**
+     * Cancel everything in flight and forget the current keyword.
+     */
+    void reset(String keyword) {
+        if (mGeneration != null) {
+            mLoader.cancelLoads(mGeneration);
+        }
+        mKeyword = keyword;
+        mGeneration = new Object();
+        mPendingPages.clear();
+        mFailedPages.clear();
+        mTotalPages = -1;
+        mWantedPage = 0;
+        mLastRequestedPage = 0;
+        mNextPageToDeliver = 1;
+    }
+
+    /**
+     * Called by the {@link PageLoader} when a page has been loaded.
+     */
+    void onPageLoaded(Object generation, int page, SearchResults searchResults) {
+        if (generation != mGeneration) {
+            Log.v(TAG, "discarding page " + page + " of a previous keyword");
+            return;
+        }
+        if (TitleSearchRequest.isSuccessful(searchResults)) {
+            mTotalPages = (searchResults.totalResults + PAGE_SIZE - 1) / PAGE_SIZE;
+        } else if (page == 1) {
+            mTotalPages = 0;
+        }
+        mPendingPages.put(page, searchResults);
+
+        SearchResults next;
+        while ((next = mPendingPages.get(mNextPageToDeliver)) != null) {
+            mPendingPages.remove(mNextPageToDeliver);
+            mSink.onPageReady(mNextPageToDeliver, next);
+            mNextPageToDeliver++;
+        }
+        if (mPendingPages.size() > 0) {
+            Log.v(TAG, "holding " + mPendingPages.size() + " pages until page "
+                    + mNextPageToDeliver + " arrives");
+        }
+        fillWindow();
+    }
+
+    /**
+     * Called by the {@link PageLoader} when a page could not be loaded. The page is requested again
+     * on the next call to {@link #request(String, int)} or {@link #retryFailedPages()}.
+     */
+    void onPageFailed(Object generation, int page, VolleyError error) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mFailedPages.add(page);
+        mSink.onPageFailed(page, error);
+    }
+
+    /**
+     * Request the pages that failed to load again.
+     */
+    void retryFailedPages() {
+        for (Integer page : mFailedPages) {
+            Log.d(TAG, "retrying page " + page);
+            mLoader.loadPage(mKeyword, page, mGeneration, page > mWantedPage);
+        }
+        mFailedPages.clear();
+    }
+
+    private void fillWindow() {
+        if (mKeyword == null || mWantedPage == 0) {
+            return;
+        }
+        // until the first page arrives the number of pages is unknown
+        final int lastPage = mTotalPages < 0
+                ? 1
+                : Math.min(mTotalPages, mWantedPage + mWindow);
+        while (mLastRequestedPage < lastPage) {
+            mLastRequestedPage++;
+            mLoader.loadPage(mKeyword, mLastRequestedPage, mGeneration,
+                    mLastRequestedPage > mWantedPage);
+        }
+    }
+
+    /**
+     * Issues the actual page loads.
+     */
+    interface PageLoader {
+        /**
+         * Start loading a page. The result must be reported to {@link #onPageLoaded} or
+         * {@link #onPageFailed} along with the generation.
+         *
+         * @param isPrefetch true if the user is not waiting for the page yet
+         */
+        void loadPage(String keyword, int page, Object generation, boolean isPrefetch);
+
+        /**
+         * The user is now waiting for a page that was started as a prefetch.
+         */
+        void expeditePage(String keyword, int page, Object generation);
+
+        /**
+         * Cancel all outstanding loads started with the given generation.
+         */
+        void cancelLoads(Object generation);
+    }
+
+    /**
+     * Receives the loaded pages in page order.
+     */
+    interface PageSink {
+        void onPageReady(int page, SearchResults searchResults);
+
+        void onPageFailed(int page, VolleyError error);
+    }
+}
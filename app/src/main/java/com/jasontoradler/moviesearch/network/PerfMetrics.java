@@ -0,0 +1,97 @@
+package com.jasontoradler.moviesearch.network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide latency and size histograms of the network and render pipeline. Recording is
+ * lock-free and may happen on any thread. The current numbers can be dumped from
+ * {@link SearchTool#dumpMetrics()}, e.g. through the MetricsDumpReceiver of debug builds.
+ */
+public final class PerfMetrics {
+
+    private static final PerfMetrics sInstance = new PerfMetrics();
+
+    // declared before the histograms, which add themselves as they are initialized
+    private final List<Histogram> mHistograms = new ArrayList<>();
+
+    /**
+     * Host name lookups; calls on a pooled connection need none.
+     */
+    public final Histogram dnsMs = add(new Histogram("dns", "ms"));
+    /**
+     * TCP and TLS connection setup; calls on a pooled connection need none.
+     */
+    public final Histogram connectMs = add(new Histogram("connect", "ms"));
+    /**
+     * From the start of an HTTP call until its response headers start arriving.
+     */
+    public final Histogram ttfbMs = add(new Histogram("ttfb", "ms"));
+    /**
+     * From handing a request to the network until its body is read.
+     */
+    public final Histogram networkMs = add(new Histogram("network", "ms"));
+    public final Histogram responseBytes = add(new Histogram("responseBytes", "B"));
+    /**
+     * Time a request was held back by the scheduler before it entered Volley's queue.
+     */
+    public final Histogram scheduleWaitMs = add(new Histogram("scheduleWait", "ms"));
+    /**
+     * Time a request waited in the queue before a network dispatcher took it.
+     */
+    public final Histogram queueWaitMs = add(new Histogram("queueWait", "ms"));
+    public final Histogram parseUs = add(new Histogram("parse", "us"));
+    /**
+     * Decoding a response read from the {@link ResponseCache}, to compare with parsing its JSON.
+     */
+    public final Histogram cacheDecodeUs = add(new Histogram("cacheDecode", "us"));
+    /**
+     * Encoded size of a cached response, to compare with responseBytes.
+     */
+    public final Histogram cacheBytes = add(new Histogram("cacheBytes", "B"));
+    public final Histogram decodeUs = add(new Histogram("posterDecode", "us"));
+    /**
+     * From starting a search until its first results are shown.
+     */
+    public final Histogram timeToFirstResultMs = add(new Histogram("timeToFirstResult", "ms"));
+    /**
+     * Reading a saved session back from disk.
+     */
+    public final Histogram sessionRestoreMs = add(new Histogram("sessionRestore", "ms"));
+
+    /**
+     * Volley marker added when a request enters the queue.
+     */
+    static final String MARKER_QUEUED = "add-to-queue";
+    /**
+     * Volley marker added when a network dispatcher takes a request.
+     */
+    static final String MARKER_DISPATCHED = "network-queue-take";
+
+    public static PerfMetrics instance() {
+        return sInstance;
+    }
+
+    private PerfMetrics() {
+    }
+
+    private Histogram add(Histogram histogram) {
+        mHistograms.add(histogram);
+        return histogram;
+    }
+
+    public void reset() {
+        for (Histogram histogram : mHistograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Append one line per histogram.
+     */
+    public void dump(StringBuilder builder) {
+        for (Histogram histogram : mHistograms) {
+            builder.append(histogram).append('\n');
+        }
+    }
+}
@@ -0,0 +1,368 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Build;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.android.volley.Cache;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+import com.android.volley.Response;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.DiskBasedCache;
+import com.android.volley.toolbox.ImageLoader;
+
+import java.io.File;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier cache and decoder for poster images. Decoded bitmaps are kept in memory, and the
+ * encoded images in a dedicated disk tier that survives process death. Images are decoded on
+ * Volley's threads, downsampled to the size of the target view and, if possible, into the memory
+ * of a bitmap previously evicted from the memory tier. A bitmap is only decoded into once no view
+ * shows it anymore, which the views report through {@link #onBitmapShown} and
+ * {@link #onBitmapHidden}.
+ */
+public final class PosterPipeline implements CacheRegistry.TrimmableCache {
+
+    static final String DISK_KEY_PREFIX = "poster:";
+    static final long DISK_TTL_MS = TimeUnit.DAYS.toMillis(30);
+
+    private static final String TAG = "PosterPipeline";
+    private static final String DISK_DIR = "posters";
+    private static final int DISK_MAX_BYTES = 20 * 1024 * 1024;
+
+    private final Bitmap.Config mDecodeConfig;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final Cache mDiskCache;
+    private final Set<SoftReference<Bitmap>> mReusableBitmaps = new HashSet<>();
+    /**
+     * Number of views showing each bitmap; guarded by mReusableBitmaps like the fields below.
+     */
+    private final Map<Bitmap, Integer> mShownCounts = new HashMap<>();
+    /**
+     * Bitmaps evicted from the memory tier while a view still showed them, to be offered for
+     * reuse once the last of these views lets go of them.
+     */
+    private final Set<Bitmap> mEvictedWhileShown = new HashSet<>();
+
+    private final AtomicLong mMemoryHits = new AtomicLong();
+    private final AtomicLong mMemoryMisses = new AtomicLong();
+    private final AtomicLong mDiskHits = new AtomicLong();
+    private final AtomicLong mDiskMisses = new AtomicLong();
+    private final AtomicLong mDecodeCount = new AtomicLong();
+    private final AtomicLong mDecodedBytes = new AtomicLong();
+    private final AtomicLong mReusedCount = new AtomicLong();
+
+    /**
+     * @param decodeConfig bitmap config to decode posters with; RGB_565 halves the memory of
+     *                     thumbnails, which have no transparency anyway
+     */
+    public PosterPipeline(Context context, Bitmap.Config decodeConfig) {
+        mDecodeConfig = decodeConfig;
+        mMemoryCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+                    Bitmap newValue) {
+                // rows on screen, cached rows and prefetched rows may all still show an evicted
+                // bitmap; decoding into it before they let go would replace their poster
+                if (evicted && oldValue.isMutable()) {
+                    synchronized (mReusableBitmaps) {
+                        if (mShownCounts.containsKey(oldValue)) {
+                            mEvictedWhileShown.add(oldValue);
+                        } else {
+                            mReusableBitmaps.add(new SoftReference<>(oldValue));
+                        }
+                    }
+                }
+            }
+        };
+        mDiskCache = new DiskBasedCache(
+                new File(context.getApplicationContext().getCacheDir(), DISK_DIR), DISK_MAX_BYTES);
+    }
+
+    /**
+     * Wrap the cache of the request queue so that poster responses are stored in the poster disk
+     * tier and everything else in the given cache.
+     */
+    public Cache createRequestCache(Cache defaultCache) {
+        return new RoutingCache(defaultCache);
+    }
+
+    /**
+     * @return ImageLoader that caches in this pipeline and decodes with {@link PosterRequest}
+     */
+    public ImageLoader createImageLoader(RequestQueue requestQueue) {
+        return new PosterLoader(requestQueue);
+    }
+
+    Bitmap.Config getDecodeConfig() {
+        return mDecodeConfig;
+    }
+
+    /**
+     * Called on the main thread when a view starts showing the bitmap, which must then not be
+     * decoded into until {@link #onBitmapHidden} is called for it.
+     */
+    public void onBitmapShown(Bitmap bitmap) {
+        synchronized (mReusableBitmaps) {
+            final Integer count = mShownCounts.get(bitmap);
+            mShownCounts.put(bitmap, count == null ? 1 : count + 1);
+        }
+    }
+
+    /**
+     * Called on the main thread when a view no longer shows a bitmap it reported to
+     * {@link #onBitmapShown}.
+     */
+    public void onBitmapHidden(Bitmap bitmap) {
+        synchronized (mReusableBitmaps) {
+            final Integer count = mShownCounts.get(bitmap);
+            if (count == null) {
+                return;
+            }
+            if (count > 1) {
+                mShownCounts.put(bitmap, count - 1);
+            } else {
+                mShownCounts.remove(bitmap);
+                if (mEvictedWhileShown.remove(bitmap)) {
+                    mReusableBitmaps.add(new SoftReference<>(bitmap));
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove and return an evicted bitmap that no view shows and that the image described by the
+     * options can be decoded into, or null if there is none.
+     */
+    Bitmap takeReusableBitmap(BitmapFactory.Options options) {
+        synchronized (mReusableBitmaps) {
+            final Iterator<SoftReference<Bitmap>> iterator = mReusableBitmaps.iterator();
+            while (iterator.hasNext()) {
+                final Bitmap candidate = iterator.next().get();
+                if (candidate == null || !candidate.isMutable() || candidate.isRecycled()
+                        || mShownCounts.containsKey(candidate)) {
+                    // a view may show a bitmap again after it was evicted, e.g. one whose
+                    // response was delivered just as it was evicted
+                    iterator.remove();
+                } else if (canDecodeInto(candidate, options)) {
+                    iterator.remove();
+                    mReusedCount.incrementAndGet();
+                    return candidate;
+                }
+            }
+        }
+        return null;
+    }
+
+    void onDecoded(Bitmap bitmap) {
+        mDecodeCount.incrementAndGet();
+        mDecodedBytes.addAndGet(bitmap.getByteCount());
+    }
+
+    private static boolean canDecodeInto(Bitmap candidate, BitmapFactory.Options options) {
+        if (candidate.getConfig() != options.inPreferredConfig) {
+            return false;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            final int width = options.outWidth / options.inSampleSize;
+            final int height = options.outHeight / options.inSampleSize;
+            return width * height * bytesPerPixel(options.inPreferredConfig)
+                    <= candidate.getAllocationByteCount();
+        }
+        // before KitKat the sizes must match exactly and the image must not be subsampled
+        return candidate.getWidth() == options.outWidth
+                && candidate.getHeight() == options.outHeight
+                && options.inSampleSize == 1;
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        }
+        return 1;
+    }
+
+    public float getMemoryHitRate() {
+        return rate(mMemoryHits.get(), mMemoryMisses.get());
+    }
+
+    public float getDiskHitRate() {
+        return rate(mDiskHits.get(), mDiskMisses.get());
+    }
+
+    public long getDecodeCount() {
+        return mDecodeCount.get();
+    }
+
+    public long getDecodedBytes() {
+        return mDecodedBytes.get();
+    }
+
+    /**
+     * @return number of decodes that reused the memory of an evicted bitmap
+     */
+    public long getReusedCount() {
+        return mReusedCount.get();
+    }
+
+    @Override
+    public String getName() {
+        return "posters";
+    }
+
+    @Override
+    public long getFootprint() {
+        return mMemoryCache.size();
+    }
+
+    @Override
+    public void trimToFraction(float fraction) {
+        mMemoryCache.trimToSize((int) (mMemoryCache.maxSize() * fraction));
+        if (fraction < 1f) {
+            // the trimmed bitmaps were just offered for reuse; let them go instead
+            synchronized (mReusableBitmaps) {
+                mReusableBitmaps.clear();
+                mEvictedWhileShown.clear();
+            }
+        }
+    }
+
+    private static float rate(long hits, long misses) {
+        final long total = hits + misses;
+        return total > 0 ? (float) hits / total : 0f;
+    }
+
+    @Override
+    public String toString() {
+        return "PosterPipeline{memoryHitRate=" + getMemoryHitRate()
+                + ", diskHitRate=" + getDiskHitRate()
+                + ", decodes=" + getDecodeCount()
+                + ", decodedBytes=" + getDecodedBytes()
+                + ", reused=" + getReusedCount()
+                + ", memoryBytes=" + mMemoryCache.size() + "}";
+    }
+
+    /**
+     * ImageLoader using the memory tier of the pipeline and loading posters with
+     * {@link PosterRequest}.
+     */
+    private final class PosterLoader extends ImageLoader {
+
+        PosterLoader(RequestQueue requestQueue) {
+            super(requestQueue, new ImageCache() {
+                @Override
+                public Bitmap getBitmap(String cacheKey) {
+                    final Bitmap bitmap = mMemoryCache.get(cacheKey);
+                    if (bitmap != null) {
+                        mMemoryHits.incrementAndGet();
+                    } else {
+                        mMemoryMisses.incrementAndGet();
+                    }
+                    return bitmap;
+                }
+
+                @Override
+                public void putBitmap(String cacheKey, Bitmap bitmap) {
+                    mMemoryCache.put(cacheKey, bitmap);
+                }
+            });
+        }
+
+        @Override
+        protected Request<Bitmap> makeImageRequest(String requestUrl, int maxWidth, int maxHeight,
+                ImageView.ScaleType scaleType, final String cacheKey) {
+            return new PosterRequest(requestUrl, PosterPipeline.this, maxWidth, maxHeight,
+                    new Response.Listener<Bitmap>() {
+                        @Override
+                        public void onResponse(Bitmap response) {
+                            onGetImageSuccess(cacheKey, response);
+                        }
+                    },
+                    new Response.ErrorListener() {
+                        @Override
+                        public void onErrorResponse(VolleyError error) {
+                            Log.v(TAG, "error loading " + cacheKey + ": " + error);
+                            onGetImageError(cacheKey, error);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Volley cache that stores poster responses in the poster disk tier, counting its hits, and
+     * every other response in the default cache.
+     */
+    private final class RoutingCache implements Cache {
+
+        private final Cache mDefaultCache;
+
+        RoutingCache(Cache defaultCache) {
+            mDefaultCache = defaultCache;
+        }
+
+        private Cache route(String key) {
+            return key.startsWith(DISK_KEY_PREFIX) ? mDiskCache : mDefaultCache;
+        }
+
+        @Override
+        public Entry get(String key) {
+            final Cache cache = route(key);
+            final Entry entry = cache.get(key);
+            if (cache == mDiskCache) {
+                if (entry != null && !entry.isExpired()) {
+                    mDiskHits.incrementAndGet();
+                } else {
+                    mDiskMisses.incrementAndGet();
+                }
+            }
+            return entry;
+        }
+
+        @Override
+        public void put(String key, Entry entry) {
+            route(key).put(key, entry);
+        }
+
+        @Override
+        public void initialize() {
+            mDefaultCache.initialize();
+            mDiskCache.initialize();
+        }
+
+        @Override
+        public void invalidate(String key, boolean fullExpire) {
+            route(key).invalidate(key, fullExpire);
+        }
+
+        @Override
+        public void remove(String key) {
+            route(key).remove(key);
+        }
+
+        @Override
+        public void clear() {
+            mDefaultCache.clear();
+            mDiskCache.clear();
+        }
+    }
+}
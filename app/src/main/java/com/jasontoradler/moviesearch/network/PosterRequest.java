@@ -0,0 +1,156 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import com.android.volley.Cache;
+import com.android.volley.DefaultRetryPolicy;
+import com.android.volley.NetworkResponse;
+import com.android.volley.ParseError;
+import com.android.volley.Request;
+import com.android.volley.Response;
+import com.android.volley.toolbox.HttpHeaderParser;
+
+/**
+ * Fetch a poster image and decode it, downsampled to the size of the view that displays it, on
+ * the dispatcher thread. The encoded image is kept in the poster disk tier for a fixed time
+ * regardless of the cache headers sent by the image host.
+ */
+final class PosterRequest extends Request<Bitmap> {
+
+    private static final int TIMEOUT_MS = 1000;
+    private static final int MAX_RETRIES = 2;
+    private static final float BACKOFF_MULT = 2f;
+
+    /**
+     * Decode one image at a time to bound the memory used by decoding, like Volley's ImageRequest.
+     */
+    private static final Object DECODE_LOCK = new Object();
+
+    private final Response.Listener<Bitmap> mListener;
+    private final PosterPipeline mPipeline;
+    private final int mMaxWidth;
+    private final int mMaxHeight;
+    private long mQueuedAtNanos;
+
+    PosterRequest(
+            String url,
+            PosterPipeline pipeline,
+            int maxWidth,
+            int maxHeight,
+            Response.Listener<Bitmap> listener,
+            Response.ErrorListener errorListener) {
+        super(Method.GET, url, errorListener);
+        setRetryPolicy(new DefaultRetryPolicy(TIMEOUT_MS, MAX_RETRIES, BACKOFF_MULT));
+        mPipeline = pipeline;
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mListener = listener;
+    }
+
+    @Override
+    public String getCacheKey() {
+        // routes the response to the poster disk tier
+        return PosterPipeline.DISK_KEY_PREFIX + getUrl();
+    }
+
+    /**
+     * Posters are only requested for bound rows, so they rank above prefetched pages and details.
+     */
+    @Override
+    public Priority getPriority() {
+        return Priority.NORMAL;
+    }
+
+    @Override
+    public void addMarker(String tag) {
+        super.addMarker(tag);
+        if (PerfMetrics.MARKER_QUEUED.equals(tag)) {
+            mQueuedAtNanos = System.nanoTime();
+        } else if (PerfMetrics.MARKER_DISPATCHED.equals(tag) && mQueuedAtNanos != 0) {
+            PerfMetrics.instance().queueWaitMs.record(
+                    (System.nanoTime() - mQueuedAtNanos) / 1000000);
+        }
+    }
+
+    @Override
+    protected Response<Bitmap> parseNetworkResponse(NetworkResponse response) {
+        final Bitmap bitmap;
+        synchronized (DECODE_LOCK) {
+            try {
+                final long start = System.nanoTime();
+                bitmap = decode(response.data);
+                PerfMetrics.instance().decodeUs.record((System.nanoTime() - start) / 1000);
+            } catch (OutOfMemoryError e) {
+                return Response.error(new ParseError(e));
+            }
+        }
+        if (bitmap == null) {
+            return Response.error(new ParseError(response));
+        }
+        return Response.success(bitmap, cacheEntry(response));
+    }
+
+    @Override
+    protected void deliverResponse(Bitmap response) {
+        mListener.onResponse(response);
+    }
+
+    private Bitmap decode(byte[] data) {
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, options.outHeight);
+        options.inPreferredConfig = mPipeline.getDecodeConfig();
+        // mutable so that the bitmap can be decoded into again once it is evicted and not shown
+        options.inMutable = true;
+        options.inBitmap = mPipeline.takeReusableBitmap(options);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+            // the reusable bitmap did not fit after all
+            options.inBitmap = null;
+            bitmap = BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (bitmap != null) {
+            mPipeline.onDecoded(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * @return largest power of two that keeps the decoded image at least as large as the view
+     */
+    private int sampleSize(int width, int height) {
+        int sampleSize = 1;
+        if (mMaxWidth <= 0 && mMaxHeight <= 0) {
+            return sampleSize;
+        }
+        while ((mMaxWidth <= 0 || width / (sampleSize * 2) >= mMaxWidth)
+                && (mMaxHeight <= 0 || height / (sampleSize * 2) >= mMaxHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static Cache.Entry cacheEntry(NetworkResponse response) {
+        Cache.Entry entry = HttpHeaderParser.parseCacheHeaders(response);
+        if (entry == null) {
+            entry = new Cache.Entry();
+            entry.data = response.data;
+            entry.responseHeaders = response.headers;
+        }
+        // posters of a title never change, so keep them no matter what the headers say
+        final long expires = System.currentTimeMillis() + PosterPipeline.DISK_TTL_MS;
+        entry.ttl = expires;
+        entry.softTtl = expires;
+        return entry;
+    }
+}
@@ -0,0 +1,295 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.android.volley.Cache;
+import com.android.volley.Network;
+import com.android.volley.Request;
+import com.android.volley.RequestQueue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RequestQueue that holds requests back in priority classes and only hands them to Volley's
+ * dispatchers while their class is below its concurrency limit. Volley orders the requests it
+ * has by priority, but once all of its dispatchers are busy with posters a search has to wait for
+ * one of them to finish. Here, searches are never held, and the other classes together never
+ * occupy the last dispatcher, so a search always finds one free.
+ * <p>
+ * A held request that has waited longer than {@link #AGING_MS} is let through even if its class
+ * is at its limit, so a steady stream of more important requests cannot starve it. While requests
+ * are held, the queue checks again when the oldest of them ages, even if no request is added or
+ * finishes in the meantime.
+ * <p>
+ * Requests may be added from any thread; the scheduling itself happens on the main thread.
+ */
+final class PriorityRequestQueue extends RequestQueue {
+
+    /**
+     * Priority classes, most important first. A request's class follows from its priority.
+     */
+    enum RequestClass {
+        /**
+         * A search the user is waiting for; never held.
+         */
+        SEARCH(Request.Priority.IMMEDIATE),
+        /**
+         * Details the user asked for.
+         */
+        DETAILS(Request.Priority.HIGH),
+        /**
+         * Posters of bound, i.e. visible or nearly visible, rows.
+         */
+        POSTER(Request.Priority.NORMAL),
+        /**
+         * Pages, details and revalidations nobody is waiting for yet.
+         */
+        PREFETCH(Request.Priority.LOW);
+
+        final Request.Priority priority;
+
+        RequestClass(Request.Priority priority) {
+            this.priority = priority;
+        }
+
+        static RequestClass of(Request.Priority priority) {
+            for (RequestClass requestClass : values()) {
+                if (requestClass.priority == priority) {
+                    return requestClass;
+                }
+            }
+            return PREFETCH;
+        }
+    }
+
+    private static final String TAG = "PriorityRequestQueue";
+    static final long AGING_MS = 2000;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * Maximum number of requests of all classes but SEARCH handed to Volley at once.
+     */
+    private final int mMaxBackgroundInFlight;
+    private final int[] mLimits = new int[RequestClass.values().length];
+    private final int[] mInFlight = new int[RequestClass.values().length];
+    private final List<ArrayDeque<Held>> mHeld = new ArrayList<>();
+    private final Map<Request<?>, RequestClass> mAdmitted = new IdentityHashMap<>();
+    private final Runnable mScheduleAged = new Runnable() {
+        @Override
+        public void run() {
+            schedule();
+        }
+    };
+    private int mAgedCount;
+
+    /**
+     * @param threadPoolSize number of network dispatchers
+     */
+    PriorityRequestQueue(Cache cache, Network network, int threadPoolSize) {
+        super(cache, network, threadPoolSize);
+        mMaxBackgroundInFlight = Math.max(1, threadPoolSize - 1);
+        mLimits[RequestClass.SEARCH.ordinal()] = Integer.MAX_VALUE;
+        mLimits[RequestClass.DETAILS.ordinal()] = Math.max(1, threadPoolSize / 2);
+        mLimits[RequestClass.POSTER.ordinal()] = Math.max(1, threadPoolSize / 2);
+        mLimits[RequestClass.PREFETCH.ordinal()] = Math.max(1, threadPoolSize / 4);
+        for (int i = 0; i < RequestClass.values().length; i++) {
+            mHeld.add(new ArrayDeque<Held>());
+        }
+        addRequestFinishedListener(new RequestFinishedListener<Object>() {
+            @Override
+            public void onRequestFinished(final Request<Object> request) {
+                // cancelled requests are finished on a dispatcher thread
+                runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onFinished(request);
+                    }
+                });
+            }
+        });
+    }
+
+    @Override
+    public <T> Request<T> add(final Request<T> request) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mMainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    add(request);
+                }
+            });
+            return request;
+        }
+        mHeld.get(RequestClass.of(request.getPriority()).ordinal()).add(new Held(request));
+        schedule();
+        return request;
+    }
+
+    /**
+     * Move a held request up to the class of the given priority, e.g. when the user starts
+     * waiting for a page that was being prefetched. Requests already handed to Volley keep their
+     * place. Must be called on the main thread.
+     */
+    void expedite(Request<?> request, Request.Priority priority) {
+        final RequestClass target = RequestClass.of(priority);
+        for (int i = target.ordinal() + 1; i < mHeld.size(); i++) {
+            final Iterator<Held> iterator = mHeld.get(i).iterator();
+            while (iterator.hasNext()) {
+                final Held held = iterator.next();
+                if (held.request == request) {
+                    iterator.remove();
+                    if (request instanceof OmdbRequest) {
+                        ((OmdbRequest<?>) request).setPriority(priority);
+                    }
+                    Log.v(TAG, "expedited to " + target + ": " + request.getUrl());
+                    mHeld.get(target.ordinal()).add(held);
+                    schedule();
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void cancelAll(RequestFilter filter) {
+        super.cancelAll(filter);
+        // held requests are not known to Volley yet
+        for (ArrayDeque<Held> held : mHeld) {
+            for (Held entry : held) {
+                if (filter.apply(entry.request)) {
+                    entry.request.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return requests of each class handed to Volley and held back, and how many were let
+     * through because they had waited too long
+     */
+    String dump() {
+        final StringBuilder builder = new StringBuilder("scheduler{");
+        for (RequestClass requestClass : RequestClass.values()) {
+            builder.append(requestClass).append("=")
+                    .append(mInFlight[requestClass.ordinal()]).append('/')
+                    .append(mHeld.get(requestClass.ordinal()).size()).append(", ");
+        }
+        return builder.append("aged=").append(mAgedCount).append('}').toString();
+    }
+
+    private void onFinished(Request<?> request) {
+        final RequestClass requestClass = mAdmitted.remove(request);
+        if (requestClass != null) {
+            mInFlight[requestClass.ordinal()]--;
+            schedule();
+        }
+    }
+
+    private void schedule() {
+        Held next;
+        while ((next = takeNext()) != null) {
+            final RequestClass requestClass = RequestClass.of(next.request.getPriority());
+            mInFlight[requestClass.ordinal()]++;
+            mAdmitted.put(next.request, requestClass);
+            PerfMetrics.instance().scheduleWaitMs.record(
+                    (System.nanoTime() - next.heldAtNanos) / 1000000);
+            super.add(next.request);
+        }
+        scheduleAgingCheck();
+    }
+
+    /**
+     * Schedule again once the oldest held request has waited {@link #AGING_MS}; otherwise it would
+     * only be let through when a request is added or finishes.
+     */
+    private void scheduleAgingCheck() {
+        mMainHandler.removeCallbacks(mScheduleAged);
+        long oldestHeldAtNanos = Long.MAX_VALUE;
+        for (int i = RequestClass.SEARCH.ordinal() + 1; i < mHeld.size(); i++) {
+            final Held head = mHeld.get(i).peek();
+            if (head != null) {
+                oldestHeldAtNanos = Math.min(oldestHeldAtNanos, head.heldAtNanos);
+            }
+        }
+        if (oldestHeldAtNanos != Long.MAX_VALUE) {
+            final long delayMs = AGING_MS - (System.nanoTime() - oldestHeldAtNanos) / 1000000;
+            // a request already aged waits for a free dispatcher, which schedules when it finishes
+            mMainHandler.postDelayed(mScheduleAged, Math.max(delayMs + 1, AGING_MS / 4));
+        }
+    }
+
+    /**
+     * @return the held request to hand to Volley next, or null if all must keep waiting
+     */
+    private Held takeNext() {
+        dropCancelled();
+        final ArrayDeque<Held> searches = mHeld.get(RequestClass.SEARCH.ordinal());
+        if (!searches.isEmpty()) {
+            return searches.poll();
+        }
+        int backgroundInFlight = 0;
+        for (int i = RequestClass.SEARCH.ordinal() + 1; i < mInFlight.length; i++) {
+            backgroundInFlight += mInFlight[i];
+        }
+        if (backgroundInFlight >= mMaxBackgroundInFlight) {
+            return null;
+        }
+
+        // the longest waiting request skips the class limit once it has waited too long
+        final long agedBefore = System.nanoTime() - AGING_MS * 1000000;
+        ArrayDeque<Held> oldest = null;
+        for (int i = RequestClass.SEARCH.ordinal() + 1; i < mHeld.size(); i++) {
+            final Held head = mHeld.get(i).peek();
+            if (head != null && head.heldAtNanos < agedBefore
+                    && (oldest == null || head.heldAtNanos < oldest.peek().heldAtNanos)) {
+                oldest = mHeld.get(i);
+            }
+        }
+        if (oldest != null) {
+            mAgedCount++;
+            return oldest.poll();
+        }
+
+        for (int i = RequestClass.SEARCH.ordinal() + 1; i < mHeld.size(); i++) {
+            if (!mHeld.get(i).isEmpty() && mInFlight[i] < mLimits[i]) {
+                return mHeld.get(i).poll();
+            }
+        }
+        return null;
+    }
+
+    private void dropCancelled() {
+        for (ArrayDeque<Held> held : mHeld) {
+            final Iterator<Held> iterator = held.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().request.isCanceled()) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mMainHandler.post(runnable);
+        }
+    }
+
+    private static final class Held {
+        final Request<?> request;
+        final long heldAtNanos = System.nanoTime();
+
+        Held(Request<?> request) {
+            this.request = request;
+        }
+    }
+}
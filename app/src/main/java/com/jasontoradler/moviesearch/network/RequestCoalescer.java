@@ -0,0 +1,231 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.util.Log;
+
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Table of in-flight lookups keyed by URL. Identical lookups made while one is already running are
+ * attached to it instead of starting another network call, and its result is fanned out to every
+ * attached callback. Each callback is registered on behalf of an owner (usually the caller's
+ * listener), and the underlying request is cancelled once the last owner detaches.
+ * <p>
+ * Not thread-safe; all methods must be called on the main thread.
+ *
+ * @param <T> type of the lookup result
+ */
+final class RequestCoalescer<T> {
+
+    private static final String TAG = "RequestCoalescer";
+
+    private final Map<String, Call<T>> mCalls = new HashMap<>();
+    private int mStartedCount;
+    private int mCoalescedCount;
+
+    /**
+     * Attach a callback to the lookup of the key, starting it if it is not already in flight.
+     *
+     * @param owner    identifies the callback in {@link #detach(String, Object, boolean)}
+     * @param callback receives the shared result
+     * @param starter  starts the lookup if none is in flight for the key
+     */
+    void attach(String key, Object owner, Callback<T> callback, Starter<T> starter) {
+        Call<T> call = mCalls.get(key);
+        if (call != null) {
+            mCoalescedCount++;
+            Log.v(TAG, "coalescing onto in-flight call: " + key);
+            call.mSubscribers.add(new Subscriber<>(owner, callback));
+            return;
+        }
+        mStartedCount++;
+        call = new Call<>(this, key);
+        call.mSubscribers.add(new Subscriber<>(owner, callback));
+        mCalls.put(key, call);
+        starter.start(call);
+    }
+
+    /**
+     * Remove the owner's callbacks from the lookup of the key.
+     *
+     * @param cancelIfUnused cancel the lookup if no other owner is attached to it
+     */
+    void detach(String key, Object owner, boolean cancelIfUnused) {
+        final Call<T> call = mCalls.get(key);
+        if (call != null) {
+            call.removeOwner(owner);
+            if (cancelIfUnused && call.mSubscribers.isEmpty()) {
+                call.cancel();
+            }
+        }
+    }
+
+    /**
+     * Remove the owner's callbacks from every lookup in flight.
+     *
+     * @param cancelIfUnused cancel the lookups that no other owner is attached to
+     */
+    void detachAll(Object owner, boolean cancelIfUnused) {
+        final List<Call<T>> calls = new ArrayList<>(mCalls.values());
+        for (Call<T> call : calls) {
+            call.removeOwner(owner);
+            if (cancelIfUnused && call.mSubscribers.isEmpty()) {
+                call.cancel();
+            }
+        }
+    }
+
+    boolean isInFlight(String key) {
+        return mCalls.containsKey(key);
+    }
+
+    /**
+     * @return the lookup of the key in flight, or null
+     */
+    Call<T> getCall(String key) {
+        return mCalls.get(key);
+    }
+
+    /**
+     * @return number of lookups that actually had to be started
+     */
+    int getStartedCount() {
+        return mStartedCount;
+    }
+
+    /**
+     * @return number of lookups that were attached to one already in flight
+     */
+    int getCoalescedCount() {
+        return mCoalescedCount;
+    }
+
+    private void finish(Call<T> call) {
+        if (mCalls.get(call.mKey) == call) {
+            mCalls.remove(call.mKey);
+        }
+    }
+
+    /**
+     * Receives the result of a lookup.
+     */
+    interface Callback<T> {
+        void onSuccess(T result);
+
+        void onError(VolleyError error);
+    }
+
+    /**
+     * Starts the shared lookup and reports its outcome through {@link Call#complete(Object)} or
+     * {@link Call#fail(VolleyError)}.
+     */
+    interface Starter<T> {
+        void start(Call<T> call);
+    }
+
+    /**
+     * A single in-flight lookup shared by one or more subscribers.
+     */
+    static final class Call<T> {
+        private final RequestCoalescer<T> mCoalescer;
+        private final String mKey;
+        private final List<Subscriber<T>> mSubscribers = new ArrayList<>();
+        private Request<?> mRequest;
+        private Request.Priority mPriority = Request.Priority.NORMAL;
+        private boolean mDone;
+
+        private Call(RequestCoalescer<T> coalescer, String key) {
+            mCoalescer = coalescer;
+            mKey = key;
+        }
+
+        /**
+         * Set the network request doing the work, so that it can be cancelled when every
+         * subscriber has gone away.
+         */
+        void setRequest(Request<?> request) {
+            mRequest = request;
+        }
+
+        /**
+         * @return the network request doing the work, or null if none has been started yet
+         */
+        Request<?> getRequest() {
+            return mRequest;
+        }
+
+        /**
+         * Set the priority of the network request, raised when a more urgent subscriber attaches.
+         */
+        void setPriority(Request.Priority priority) {
+            mPriority = priority;
+        }
+
+        Request.Priority getPriority() {
+            return mPriority;
+        }
+
+        /**
+         * @return true once the call has completed, failed or been cancelled
+         */
+        boolean isDone() {
+            return mDone;
+        }
+
+        void complete(T result) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mCoalescer.finish(this);
+            for (Subscriber<T> subscriber : mSubscribers) {
+                subscriber.callback.onSuccess(result);
+            }
+        }
+
+        void fail(VolleyError error) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mCoalescer.finish(this);
+            for (Subscriber<T> subscriber : mSubscribers) {
+                subscriber.callback.onError(error);
+            }
+        }
+
+        private void cancel() {
+            Log.v(TAG, "cancelling unused call: " + mKey);
+            mDone = true;
+            mCoalescer.finish(this);
+            if (mRequest != null) {
+                mRequest.cancel();
+            }
+        }
+
+        private void removeOwner(Object owner) {
+            final Iterator<Subscriber<T>> iterator = mSubscribers.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().owner == owner) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Subscriber<T> {
+        final Object owner;
+        final Callback<T> callback;
+
+        Subscriber(Object owner, Callback<T> callback) {
+            this.owner = owner;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent, size-bounded cache of OMDb responses stored in SQLite, each encoded by
+ * {@link com.jasontoradler.moviesearch.data.OmdbCodec}. Title searches are keyed
+ * by the normalized keyword and page, and detail searches by imdbID. Entries younger than the TTL
+ * are fresh; older entries are still returned (flagged as stale) until the stale window expires so
+ * the caller can display them immediately and revalidate in the background. Expired entries are
+ * kept as a last resort for when the network is unavailable, see {@link #get(String, boolean)}.
+ * When the total size of all bodies exceeds the limit the least recently accessed entries are
+ * evicted.
+ * <p>
+ * All reads and writes hit the disk, so they must be made from a background thread.
+ */
+public final class ResponseCache extends SQLiteOpenHelper
+        implements CacheRegistry.TrimmableCache {
+
+    private static final String TAG = "ResponseCache";
+    private static final String DB_NAME = "responses.db";
+    /**
+     * Version 2 stores the bodies as OmdbCodec records instead of JSON text.
+     */
+    private static final int DB_VERSION = 2;
+
+    private static final String TABLE = "responses";
+    private static final String COL_KEY = "key";
+    private static final String COL_BODY = "body";
+    private static final String COL_SIZE = "size";
+    private static final String COL_FETCHED_AT = "fetched_at";
+    private static final String COL_ACCESSED_AT = "accessed_at";
+
+    private static final long UNKNOWN_SIZE = -1;
+
+    private final long mMaxBytes;
+    private final long mTtlMs;
+    private final long mStaleMs;
+
+    private final Object mSizeLock = new Object();
+    /**
+     * Summed size of all cached bodies, kept up to date by {@link #put} so that it does not have to
+     * sum the whole table; {@link #UNKNOWN_SIZE} until the database is open or after a failed
+     * write.
+     */
+    private long mTotalBytes = UNKNOWN_SIZE;
+
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mStaleHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+    private final AtomicLong mEvictionCount = new AtomicLong();
+
+    /**
+     * @param context  used to locate the database
+     * @param maxBytes upper bound of the summed size of all cached bodies
+     * @param ttlMs    age after which an entry is considered stale
+     * @param staleMs  additional time a stale entry may still be served while revalidating
+     */
+    public ResponseCache(Context context, long maxBytes, long ttlMs, long staleMs) {
+        super(context.getApplicationContext(), DB_NAME, null, DB_VERSION);
+        mMaxBytes = maxBytes;
+        mTtlMs = ttlMs;
+        mStaleMs = staleMs;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COL_KEY + " TEXT PRIMARY KEY, "
+                + COL_BODY + " BLOB NOT NULL, "
+                + COL_SIZE + " INTEGER NOT NULL, "
+                + COL_FETCHED_AT + " INTEGER NOT NULL, "
+                + COL_ACCESSED_AT + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX " + TABLE + "_" + COL_ACCESSED_AT
+                + " ON " + TABLE + " (" + COL_ACCESSED_AT + ")");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // cached responses can always be fetched again, so simply start over
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        onCreate(db);
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        synchronized (mSizeLock) {
+            mTotalBytes = size(db);
+        }
+    }
+
+    /**
+     * @return cache key of a title search, ignoring case and redundant whitespace in the keyword
+     */
+    public static String titleKey(String keyword, int page) {
+        final String normalized = keyword == null
+                ? ""
+                : keyword.trim().replaceAll("\\s+", " ").toLowerCase(Locale.US);
+        return "t:" + page + ":" + normalized;
+    }
+
+    /**
+     * @return cache key of a search by IMDB id
+     */
+    public static String idKey(String imdbId) {
+        return "i:" + (imdbId == null ? "" : imdbId.trim().toLowerCase(Locale.US));
+    }
+
+    /**
+     * Look up a cached response and mark it as recently used.
+     *
+     * @return the cached entry, or null if there is none or it is too old to be served at all
+     */
+    public Entry get(String key) {
+        return get(key, false);
+    }
+
+    /**
+     * Look up a cached response and mark it as recently used.
+     *
+     * @param includeExpired also return an entry past the stale window, e.g. because the network
+     *                       is failing and an old response beats none
+     * @return the cached entry (flagged as stale if expired), or null if there is none or it is
+     * too old and expired entries were not asked for
+     */
+    public Entry get(String key, boolean includeExpired) {
+        final long now = System.currentTimeMillis();
+        Entry entry = null;
+        try {
+            final SQLiteDatabase db = getWritableDatabase();
+            final Cursor cursor = db.query(TABLE, new String[]{COL_BODY, COL_FETCHED_AT},
+                    COL_KEY + " = ?", new String[]{key}, null, null, null);
+            try {
+                if (cursor.moveToFirst()) {
+                    entry = new Entry(cursor.getBlob(0), cursor.getLong(1), mTtlMs);
+                }
+            } finally {
+                cursor.close();
+            }
+
+            if (entry != null && !includeExpired && now - entry.fetchedAt > mTtlMs + mStaleMs) {
+                // left in place as a last resort until it is replaced or trimmed
+                entry = null;
+            } else if (entry != null) {
+                final ContentValues values = new ContentValues();
+                values.put(COL_ACCESSED_AT, now);
+                db.update(TABLE, values, COL_KEY + " = ?", new String[]{key});
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "error reading '" + key + "': " + e);
+            entry = null;
+        }
+
+        if (entry == null) {
+            mMissCount.incrementAndGet();
+        } else if (entry.isStale()) {
+            mStaleHitCount.incrementAndGet();
+        } else {
+            mHitCount.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * Store (or replace) a response, then evict the least recently used entries if the cache has
+     * grown past its size limit.
+     */
+    public void put(String key, byte[] body) {
+        final long now = System.currentTimeMillis();
+        final ContentValues values = new ContentValues();
+        values.put(COL_KEY, key);
+        values.put(COL_BODY, body);
+        values.put(COL_SIZE, (long) body.length);
+        values.put(COL_FETCHED_AT, now);
+        values.put(COL_ACCESSED_AT, now);
+        try {
+            // opened outside the lock, since onOpen() takes it with the helper's lock held
+            final SQLiteDatabase db = getWritableDatabase();
+            synchronized (mSizeLock) {
+                try {
+                    if (mTotalBytes == UNKNOWN_SIZE) {
+                        mTotalBytes = size(db);
+                    }
+                    final long replacedBytes = entrySize(db, key);
+                    db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                    mTotalBytes += body.length - replacedBytes;
+                    if (mTotalBytes > mMaxBytes) {
+                        trimToSize(db, mMaxBytes);
+                    }
+                } catch (SQLiteException e) {
+                    // some of the changes may have been made; count again next time
+                    mTotalBytes = UNKNOWN_SIZE;
+                    throw e;
+                }
+            }
+        } catch (SQLiteException e) {
+            Log.e(TAG, "error writing '" + key + "': " + e);
+        }
+    }
+
+    /**
+     * Evict the least recently accessed entries until the running total is within the limit.
+     * Called with {@link #mSizeLock} held.
+     */
+    private void trimToSize(SQLiteDatabase db, long maxBytes) {
+        final Cursor cursor = db.query(TABLE, new String[]{COL_KEY, COL_SIZE},
+                null, null, null, null, COL_ACCESSED_AT + " ASC");
+        try {
+            while (mTotalBytes > maxBytes && cursor.moveToNext()) {
+                db.delete(TABLE, COL_KEY + " = ?", new String[]{cursor.getString(0)});
+                mTotalBytes -= cursor.getLong(1);
+                mEvictionCount.incrementAndGet();
+            }
+        } finally {
+            cursor.close();
+        }
+        Log.d(TAG, "trimmed to " + mTotalBytes + " bytes");
+    }
+
+    /**
+     * @return size of the body cached under the key, or 0 if there is none
+     */
+    private static long entrySize(SQLiteDatabase db, String key) {
+        final Cursor cursor = db.query(TABLE, new String[]{COL_SIZE},
+                COL_KEY + " = ?", new String[]{key}, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static long size(SQLiteDatabase db) {
+        final Cursor cursor = db.rawQuery("SELECT SUM(" + COL_SIZE + ") FROM " + TABLE, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "responses";
+    }
+
+    /**
+     * @return 0, the entries live on disk and the page cache of SQLite cannot be measured
+     */
+    @Override
+    public long getFootprint() {
+        return 0;
+    }
+
+    /**
+     * The cached responses stay on disk; only the memory SQLite holds on to is released.
+     */
+    @Override
+    public void trimToFraction(float fraction) {
+        if (fraction < 1f) {
+            SQLiteDatabase.releaseMemory();
+        }
+    }
+
+    /**
+     * @return number of lookups answered with a fresh entry
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return number of lookups answered with a stale entry that needed revalidation
+     */
+    public long getStaleHitCount() {
+        return mStaleHitCount.get();
+    }
+
+    /**
+     * @return number of lookups that found no usable entry
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * @return number of entries removed because of the size limit; expired entries are kept as a
+     * last resort until they are replaced or evicted for size
+     */
+    public long getEvictionCount() {
+        return mEvictionCount.get();
+    }
+
+    /**
+     * A cached response body along with the time it was fetched from the network.
+     */
+    public static final class Entry {
+        /**
+         * The response as encoded by OmdbCodec.
+         */
+        public final byte[] body;
+        public final long fetchedAt;
+        private final long mTtlMs;
+
+        Entry(byte[] body, long fetchedAt, long ttlMs) {
+            this.body = body;
+            this.fetchedAt = fetchedAt;
+            mTtlMs = ttlMs;
+        }
+
+        /**
+         * @return true if the entry is older than the TTL and should be fetched again
+         */
+        public boolean isStale() {
+            return System.currentTimeMillis() - fetchedAt > mTtlMs;
+        }
+    }
+}
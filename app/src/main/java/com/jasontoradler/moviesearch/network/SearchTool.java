@@ -2,247 +2,1215 @@ package com.jasontoradler.moviesearch.network;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.util.LruCache;
 import android.text.TextUtils;
 import android.util.Log;
-import android.util.LruCache;
-import android.util.Pair;
 
+import com.android.volley.Cache;
 import com.android.volley.Request;
-import com.android.volley.RequestQueue;
 import com.android.volley.Response;
 import com.android.volley.VolleyError;
+import com.android.volley.toolbox.DiskBasedCache;
 import com.android.volley.toolbox.ImageLoader;
-import com.android.volley.toolbox.StringRequest;
-import com.android.volley.toolbox.Volley;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jasontoradler.moviesearch.BuildConfig;
 import com.jasontoradler.moviesearch.R;
+import com.jasontoradler.moviesearch.data.FavoritesStore;
 import com.jasontoradler.moviesearch.data.MovieDetails;
-import com.jasontoradler.moviesearch.data.SearchResults;
+import com.jasontoradler.moviesearch.data.OmdbCodec;
+import com.jasontoradler.moviesearch.data.ResultsModel;
 import com.jasontoradler.moviesearch.data.SearchItem;
+import com.jasontoradler.moviesearch.data.SearchResults;
+import com.jasontoradler.moviesearch.data.SessionSnapshot;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Provides methods to queue asynchronous search requests of the catalog for keyword matches or
  * specific courses/specializations, and to parse the results or deliver an error message.
- * Also includes an ImageLoader with a built-in cache to aid in loading images in the background.
+ * Also includes an ImageLoader backed by a {@link PosterPipeline} to aid in loading images in the
+ * background.
+ * Responses are kept in a persistent {@link ResponseCache}, so repeated searches are answered from
+ * disk and only refreshed from the network once they become stale. Title search pages are loaded
+ * by a {@link PagePrefetcher}, which keeps several pages in flight ahead of the one being viewed.
+ * Identical lookups made while one is still in flight are coalesced onto a single network call.
+ * Requests are scheduled by a {@link PriorityRequestQueue}: searches first, then details the user
+ * asked for, posters of bound rows and finally prefetches.
  */
 public final class SearchTool {
 
     private static final String TAG = "SearchTool";
-    private static SearchTool sInstance;
+    private static volatile SearchTool sInstance;
 
-    private final RequestQueue mRequestQueue;
+    private static final long RESPONSE_CACHE_MAX_BYTES = 4 * 1024 * 1024;
+    private static final long RESPONSE_CACHE_TTL_MS = TimeUnit.HOURS.toMillis(6);
+    private static final long RESPONSE_CACHE_STALE_MS = TimeUnit.DAYS.toMillis(7);
+    private static final String VOLLEY_CACHE_DIR = "volley";
+    /**
+     * More than Volley's default of 4, since concurrent requests to a host share one multiplexed
+     * connection instead of each needing their own.
+     */
+    private static final int NETWORK_THREADS = 8;
+    private static final String POSTER_HOST_URL = "https://m.media-amazon.com/";
+    private static final int DEFAULT_PREFETCH_WINDOW = 3;
+    /**
+     * Lookups of a details batch in flight at once; with a single multiplexed connection more
+     * would mostly compete with the requests the user is waiting for.
+     */
+    static final int MAX_BATCH_LOOKUPS = 2;
+    private static final int DETAILS_CACHE_MAX_BYTES = 1024 * 1024;
+    private static final String TITLE_INDEX_FILE = "title_index";
+    private static final String FAVORITES_FILE = "favorites.log";
+    private static final String SESSION_FILE = "session.snapshot";
+    /**
+     * Network attempts of a lookup before falling back to an expired cache entry.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+    /**
+     * Automatic retries of failed title pages before they are left to the user to retry.
+     */
+    private static final int MAX_PAGE_RETRIES = 5;
+
+    private final Context mContext;
+    private final OkHttpStack mHttpStack;
+    private final PriorityRequestQueue mRequestQueue;
+    private final ResponseCache mResponseCache;
+    private final ExecutorService mCacheExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final PosterPipeline mPosterPipeline;
     private final ImageLoader mImageLoader;
-    private final List<SearchItem> mSearchItems = new ArrayList<>();
+    private final ResultsModel mResults = new ResultsModel();
+    private final PagePrefetcher mPagePrefetcher;
+    private final RequestCoalescer<SearchResults> mTitleCalls = new RequestCoalescer<>();
+    private final RequestCoalescer<MovieDetails> mDetailsCalls = new RequestCoalescer<>();
+    private final CircuitBreaker mTitleBreaker = new CircuitBreaker("search");
+    private final CircuitBreaker mDetailsBreaker = new CircuitBreaker("details");
+    private final List<TitleSearchListener> mTitleSearchListeners = new ArrayList<>();
+    private final LruCache<String, MovieDetails> mDetailsCache =
+            new LruCache<String, MovieDetails>(DETAILS_CACHE_MAX_BYTES) {
+                @Override
+                protected int sizeOf(String key, MovieDetails movieDetails) {
+                    return estimateSize(movieDetails);
+                }
+            };
+    private final CacheRegistry mCacheRegistry = new CacheRegistry();
+    private final DetailsBatch.DetailsLoader mPrefetchLoader = new DetailsBatch.DetailsLoader() {
+        @Override
+        public MovieDetails getCached(String imdbId) {
+            return mDetailsCache.get(imdbId);
+        }
+
+        @Override
+        public void load(String imdbId, Object owner,
+                RequestCoalescer.Callback<MovieDetails> callback) {
+            // behind the details the user opened and the posters on screen
+            lookupDetails(imdbId, owner, Request.Priority.LOW, callback);
+        }
+
+        @Override
+        public void cancelLoads(Object owner) {
+            mDetailsCalls.detachAll(owner, true);
+        }
+    };
+    private DetailsBatch mDetailsPrefetch;
+    private final TitleIndex mTitleIndex;
+    private final FavoritesStore mFavorites;
+    private String mBaseUrl = BuildConfig.OMDB_BASE_URL;
     private int mTotalItems;
-    private int mPrevPage;
-    private String mPrevKeyword;
+    /**
+     * Keyword whose local results are shown until its first page arrives from the network.
+     */
+    private String mLocalResultsKeyword;
+    private boolean mIsShowingLocalResults;
+    private Object mSuggestionGeneration;
+    private int mSuggestionKeystrokes;
+    private int mSuggestionQueries;
+    private int mSuggestionRequests;
+    /**
+     * Automatic retries of failed title pages since a page last arrived or was asked for.
+     */
+    private int mPageRetries;
+    private final Runnable mRetryFailedPages = new Runnable() {
+        @Override
+        public void run() {
+            if (!mTitleSearchListeners.isEmpty()) {
+                mPagePrefetcher.retryFailedPages();
+            }
+        }
+    };
 
     private SearchTool(final Context context) {
-        mRequestQueue = Volley.newRequestQueue(context);
-
-        mImageLoader = new ImageLoader(mRequestQueue,
-                new ImageLoader.ImageCache() {
-                    private final LruCache<String, Bitmap> cache = new LruCache<String, Bitmap>(
-                            (int) (Runtime.getRuntime().maxMemory() / 4)) {
-                        @Override
-                        protected int sizeOf(String key, Bitmap bitmap) {
-                            return bitmap.getByteCount();
+        mContext = context.getApplicationContext();
+        mPosterPipeline = new PosterPipeline(context, Bitmap.Config.RGB_565);
+        final Cache cache = new DiskBasedCache(new File(mContext.getCacheDir(), VOLLEY_CACHE_DIR));
+        mHttpStack = new OkHttpStack();
+        mRequestQueue = new PriorityRequestQueue(mPosterPipeline.createRequestCache(cache),
+                new TimingNetwork(mHttpStack), NETWORK_THREADS);
+        mRequestQueue.start();
+        mResponseCache = new ResponseCache(context, RESPONSE_CACHE_MAX_BYTES,
+                RESPONSE_CACHE_TTL_MS, RESPONSE_CACHE_STALE_MS);
+        mPagePrefetcher = new PagePrefetcher(DEFAULT_PREFETCH_WINDOW,
+                new PagePrefetcher.PageLoader() {
+                    @Override
+                    public void loadPage(String keyword, int page, Object generation,
+                            boolean isPrefetch) {
+                        loadTitlePage(keyword, page, generation, isPrefetch
+                                ? Request.Priority.LOW
+                                : Request.Priority.IMMEDIATE);
+                    }
+
+                    @Override
+                    public void expeditePage(String keyword, int page, Object generation) {
+                        expedite(mTitleCalls.getCall(titleSearchUrl(keyword, page)),
+                                Request.Priority.IMMEDIATE);
+                    }
+
+                    @Override
+                    public void cancelLoads(Object generation) {
+                        mTitleCalls.detachAll(generation, true);
+                    }
+                },
+                new PagePrefetcher.PageSink() {
+                    @Override
+                    public void onPageReady(int page, SearchResults searchResults) {
+                        Log.d(TAG, "onPageReady: " + page);
+                        mPageRetries = 0;
+                        applyTitleSearchResults(searchResults);
+                        for (TitleSearchListener listener
+                                : new ArrayList<>(mTitleSearchListeners)) {
+                            listener.onSuccess();
                         }
-                    };
+                    }
 
                     @Override
-                    public Bitmap getBitmap(String url) {
-                        return cache.get(url);
+                    public void onPageFailed(int page, VolleyError error) {
+                        Log.d(TAG, "onPageFailed: " + page + ", " + error);
+                        for (TitleSearchListener listener
+                                : new ArrayList<>(mTitleSearchListeners)) {
+                            listener.onError(page, error);
+                        }
+                        scheduleFailedPageRetry(error);
                     }
+                });
 
+        mImageLoader = mPosterPipeline.createImageLoader(mRequestQueue);
+        mTitleIndex = new TitleIndex(new File(mContext.getFilesDir(), TITLE_INDEX_FILE),
+                mCacheExecutor);
+        mFavorites = new FavoritesStore(new File(mContext.getFilesDir(), FAVORITES_FILE),
+                mCacheExecutor, new FavoritesStore.LoadListener() {
                     @Override
-                    public void putBitmap(String url, Bitmap bitmap) {
-                        cache.put(url, bitmap);
+                    public void onFavoritesLoaded() {
+                        markFavorites();
                     }
                 });
+
+        mCacheRegistry.register(mPosterPipeline);
+        mCacheRegistry.register(mResponseCache);
+        mCacheRegistry.register(new CacheRegistry.TrimmableCache() {
+            @Override
+            public String getName() {
+                return "details";
+            }
+
+            @Override
+            public long getFootprint() {
+                return mDetailsCache.size();
+            }
+
+            @Override
+            public void trimToFraction(float fraction) {
+                mDetailsCache.trimToSize((int) (mDetailsCache.maxSize() * fraction));
+            }
+        });
+        mContext.registerComponentCallbacks(mCacheRegistry);
     }
 
     public static SearchTool instance(final Context context) {
-        if (sInstance == null) {
-            sInstance = new SearchTool(context);
+        SearchTool instance = sInstance;
+        if (instance == null) {
+            synchronized (SearchTool.class) {
+                instance = sInstance;
+                if (instance == null) {
+                    instance = new SearchTool(context);
+                    sInstance = instance;
+                }
+            }
         }
-        return sInstance;
+        return instance;
+    }
+
+    /**
+     * Connect to the OMDb and poster hosts in the background, so that the first search does not
+     * wait for the DNS lookups and TLS handshakes. Call early, e.g. when the app starts.
+     */
+    public void warmUp() {
+        mHttpStack.warmUp(mBaseUrl, POSTER_HOST_URL);
     }
 
     public ImageLoader getImageLoader() {
         return mImageLoader;
     }
 
+    public PosterPipeline getPosterPipeline() {
+        return mPosterPipeline;
+    }
+
+    public CacheRegistry getCacheRegistry() {
+        return mCacheRegistry;
+    }
+
+    /**
+     * @return the latency histograms, followed by the hit ratios of the caches and the
+     * search-as-you-type counters
+     */
+    public String dumpMetrics() {
+        final StringBuilder builder = new StringBuilder();
+        PerfMetrics.instance().dump(builder);
+        final long responseLookups = mResponseCache.getHitCount()
+                + mResponseCache.getStaleHitCount() + mResponseCache.getMissCount();
+        builder.append("responseCache{hits=").append(mResponseCache.getHitCount())
+                .append(", staleHits=").append(mResponseCache.getStaleHitCount())
+                .append(", misses=").append(mResponseCache.getMissCount())
+                .append(", hitRatio=").append(responseLookups > 0
+                        ? (float) (responseLookups - mResponseCache.getMissCount())
+                        / responseLookups
+                        : 0f)
+                .append(", evictions=").append(mResponseCache.getEvictionCount())
+                .append("}\n");
+        final int detailsLookups = mDetailsCache.hitCount() + mDetailsCache.missCount();
+        builder.append("detailsCache{hits=").append(mDetailsCache.hitCount())
+                .append(", misses=").append(mDetailsCache.missCount())
+                .append(", hitRatio=").append(detailsLookups > 0
+                        ? (float) mDetailsCache.hitCount() / detailsLookups
+                        : 0f)
+                .append("}\n");
+        builder.append(mPosterPipeline).append('\n');
+        builder.append("titleCalls{started=").append(mTitleCalls.getStartedCount())
+                .append(", coalesced=").append(mTitleCalls.getCoalescedCount()).append("}\n");
+        builder.append("detailsCalls{started=").append(mDetailsCalls.getStartedCount())
+                .append(", coalesced=").append(mDetailsCalls.getCoalescedCount()).append("}\n");
+        builder.append("suggestions{").append(getSuggestionStats()).append("}\n");
+        builder.append(mRequestQueue.dump()).append('\n');
+        builder.append(mTitleBreaker).append(", ").append(mDetailsBreaker).append('\n');
+        builder.append("connections=").append(mHttpStack.getConnectionCount()).append('\n');
+        builder.append("memory=").append(mCacheRegistry.dump()).append('\n');
+        return builder.toString();
+    }
+
+    public ResponseCache getResponseCache() {
+        return mResponseCache;
+    }
+
+    /**
+     * Send the following OMDb requests to another server, e.g. a local stand-in serving recorded
+     * responses. The response caches are keyed without the server, so clear them when switching
+     * between servers that answer differently.
+     *
+     * @param baseUrl URL the OMDb query string is appended to, e.g. "http://10.0.2.2:8080/"
+     */
+    public void setBaseUrl(String baseUrl) {
+        mBaseUrl = baseUrl;
+    }
+
+    public String getBaseUrl() {
+        return mBaseUrl;
+    }
+
     public void clearResults() {
-        mSearchItems.clear();
+        mResults.clear();
         mTotalItems = 0;
-        mPrevKeyword = null;
-        mPrevPage = 0;
+        mLocalResultsKeyword = null;
+        mIsShowingLocalResults = false;
+        mPagePrefetcher.reset(null);
+        mTitleSearchListeners.clear();
+    }
+
+    /**
+     * Save the results of the keyword and the scroll position in the background, so that
+     * {@link #restoreSession(String, SessionListener)} can bring them back after the process has
+     * been killed. Local results are not saved, since they are replaced as soon as the network
+     * answers.
+     *
+     * @param position adapter position of the first visible row
+     * @param offset   offset in pixels of that row from the top of the list
+     */
+    public void saveSession(final String keyword, final int position, final int offset) {
+        final ResultsModel.Snapshot results = mResults.get();
+        if (TextUtils.isEmpty(keyword) || mIsShowingLocalResults || results.size() == 0) {
+            return;
+        }
+        final int totalItems = mTotalItems;
+        final File file = new File(mContext.getFilesDir(), SESSION_FILE);
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // the results are immutable, so they are copied here rather than on the main thread
+                final SessionSnapshot snapshot =
+                        SessionSnapshot.of(results, keyword, totalItems, position, offset);
+                try {
+                    snapshot.write(file);
+                    Log.d(TAG, "saved session of " + snapshot.size() + " results");
+                } catch (IOException e) {
+                    Log.e(TAG, "error saving session: " + e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Restore the results of the keyword saved by {@link #saveSession(String, int, int)}, without
+     * any network request. Pages beyond the restored ones are loaded by
+     * {@link #queueSearchByTitle} as usual. Only use this while there are no results.
+     */
+    public void restoreSession(final String keyword, final SessionListener listener) {
+        final File file = new File(mContext.getFilesDir(), SESSION_FILE);
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final long start = System.nanoTime();
+                SessionSnapshot snapshot = null;
+                try {
+                    snapshot = SessionSnapshot.read(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "error restoring session: " + e);
+                }
+                PerfMetrics.instance().sessionRestoreMs.record(
+                        (System.nanoTime() - start) / 1000000);
+                final SessionSnapshot restored = snapshot;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (restored == null || !restored.keyword.equals(keyword)
+                                || mResults.get().size() > 0) {
+                            listener.onSessionUnavailable();
+                            return;
+                        }
+                        Log.d(TAG, "restored session of " + restored.size() + " results");
+                        appendResults(restored.toSearchItems());
+                        mTotalItems = restored.totalItems;
+                        mPagePrefetcher.resume(keyword,
+                                (restored.size() + PagePrefetcher.PAGE_SIZE - 1)
+                                        / PagePrefetcher.PAGE_SIZE,
+                                restored.totalItems);
+                        listener.onSessionRestored(restored.position, restored.offset);
+                    }
+                });
+            }
+        });
     }
 
+    /**
+     * @return read-only view of the current results; each access materializes a new SearchItem,
+     * so prefer {@link #getResults()} when binding many items
+     */
     public List<SearchItem> getSearchItems() {
-        return mSearchItems;
+        return mResults.get().asList();
     }
 
+    /**
+     * @return a copy of the result at the position, or null if it is out of range
+     */
     public SearchItem getItem(int position) {
-        return (mSearchItems != null && position < mSearchItems.size())
-                ? mSearchItems.get(position)
-                : null;
+        return mResults.get().get(position);
+    }
+
+    /**
+     * @return the current results, which stay unchanged however the results change later and may
+     * be read from any thread
+     */
+    public ResultsModel.Snapshot getResults() {
+        return mResults.get();
+    }
+
+    /**
+     * Notify the listener on the main thread whenever the results change.
+     */
+    public void addResultsListener(ResultsModel.Listener listener) {
+        mResults.addListener(listener);
+    }
+
+    public void removeResultsListener(ResultsModel.Listener listener) {
+        mResults.removeListener(listener);
+    }
+
+    /**
+     * Flip the favorite state of the result at the position of the current results.
+     *
+     * @return the new state
+     */
+    public boolean toggleFavorite(int position) {
+        final ResultsModel.Snapshot results = mResults.get();
+        final boolean isFavorite = mFavorites.toggle(results.getImdbId(position));
+        mResults.setFavorite(results.getGeneration(), position, isFavorite);
+        return isFavorite;
+    }
+
+    public FavoritesStore getFavorites() {
+        return mFavorites;
+    }
+
+    private void appendResults(List<SearchItem> searchItems) {
+        markFavorites(searchItems);
+        mResults.append(mResults.get().getGeneration(), searchItems);
+    }
+
+    /**
+     * Replace the results with the items in a single change.
+     */
+    private void replaceResults(List<SearchItem> searchItems) {
+        markFavorites(searchItems);
+        mResults.replace(searchItems);
+    }
+
+    /**
+     * Mark the items that are in the favorites store.
+     */
+    private void markFavorites(List<SearchItem> searchItems) {
+        for (SearchItem item : searchItems) {
+            item.isFavorite = mFavorites.contains(item.imdbID);
+        }
+    }
+
+    /**
+     * Mark the current results that are in the favorites store, e.g. once it has been loaded.
+     */
+    private void markFavorites() {
+        final ResultsModel.Snapshot results = mResults.get();
+        final BitSet favorites = new BitSet();
+        for (int position = 0; position < results.size(); position++) {
+            favorites.set(position, mFavorites.contains(results.getImdbId(position)));
+        }
+        mResults.setFavorites(results.getGeneration(), favorites, results.size());
     }
 
     public int getTotalItems() {
         return mTotalItems;
     }
 
+    /**
+     * @param pages number of title search pages to load ahead of the page being viewed
+     */
+    public void setPrefetchWindow(int pages) {
+        mPagePrefetcher.setWindow(pages);
+    }
+
+    /**
+     * Request a page of title search results, along with the prefetch window beyond it. Pages that
+     * are already loaded or in flight are not requested again. Every listener registered for the
+     * keyword is notified once per page as the pages are appended, in order, to the search items.
+     */
     public void queueSearchByTitle(
             final Context context,
             final String keyword,
             int page,
             final TitleSearchListener titleSearchListener) {
-        // only make a request for new data
-        if (mPrevKeyword == null || (page != mPrevPage && TextUtils.equals(keyword, mPrevKeyword))) {
-            mPrevPage = page;
-            mPrevKeyword = keyword;
-            String encodedKeyword = null;
-            try {
-                encodedKeyword = URLEncoder.encode(keyword, "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                Log.e(TAG, "error encoding keyword: '" + keyword + "', " + e.getLocalizedMessage());
-            }
+        if (titleSearchListener != null && !mTitleSearchListeners.contains(titleSearchListener)) {
+            mTitleSearchListeners.add(titleSearchListener);
+        }
+        if (page == 1 && mResults.get().size() == 0
+                && !TextUtils.isEmpty(keyword) && !keyword.equals(mLocalResultsKeyword)) {
+            showLocalResults(keyword);
+        }
+        // a page the user asks for earns the failed pages a fresh set of retries
+        mPageRetries = 0;
+        mPagePrefetcher.request(keyword, page);
+    }
 
-            String url = context.getString(R.string.title_search_url, encodedKeyword, page);
-            Log.v(TAG, "queueSearchByTitle: " + url);
-            StringRequest request = new StringRequest(
-                    Request.Method.GET,
-                    url,
-                    new Response.Listener<String>() {
-                        @Override
-                        public void onResponse(String response) {
-                            Log.d(TAG, "queueSearchByTitle onResponse");
-                            parseTitleSearchResults(response);
-                            if (titleSearchListener != null) {
-                                titleSearchListener.onSuccess();
-                            }
+    /**
+     * Show the previously seen titles matching the keyword while its first page is loading. They
+     * are replaced by the first page from the network, or kept if it cannot be loaded.
+     */
+    private void showLocalResults(String keyword) {
+        mLocalResultsKeyword = keyword;
+        final List<SearchItem> localResults =
+                mTitleIndex.query(keyword, PagePrefetcher.PAGE_SIZE);
+        if (localResults.isEmpty()) {
+            return;
+        }
+        Log.d(TAG, "showing " + localResults.size() + " local results for '" + keyword + "'");
+        mIsShowingLocalResults = true;
+        appendResults(localResults);
+        mTotalItems = localResults.size();
+        for (TitleSearchListener listener : new ArrayList<>(mTitleSearchListeners)) {
+            listener.onSuccess();
+        }
+    }
+
+    /**
+     * @return true while the results are local matches that have not been replaced by the
+     * network yet
+     */
+    public boolean isShowingLocalResults() {
+        return mIsShowingLocalResults;
+    }
+
+    /**
+     * Stop notifying the listener about title search pages.
+     *
+     * @param cancelIfLast cancel the pages in flight if no other listener is left
+     */
+    public void removeTitleSearchListener(
+            final TitleSearchListener titleSearchListener,
+            boolean cancelIfLast) {
+        mTitleSearchListeners.remove(titleSearchListener);
+        if (cancelIfLast && mTitleSearchListeners.isEmpty()) {
+            Log.d(TAG, "removeTitleSearchListener: cancelling pages in flight");
+            mPagePrefetcher.reset(null);
+        }
+    }
+
+    private void loadTitlePage(
+            final String keyword,
+            final int page,
+            final Object generation,
+            final Request.Priority priority) {
+        attachTitlePage(keyword, page, generation, priority,
+                new RequestCoalescer.Callback<SearchResults>() {
+                    @Override
+                    public void onSuccess(SearchResults searchResults) {
+                        mPagePrefetcher.onPageLoaded(generation, page, searchResults);
+                    }
+
+                    @Override
+                    public void onError(VolleyError error) {
+                        mPagePrefetcher.onPageFailed(generation, page, error);
+                    }
+                }, false);
+    }
+
+    /**
+     * Attach the callback to the load of a title search page, starting the load (from the
+     * response cache, otherwise the network) unless the same page is already in flight.
+     *
+     * @param owner        detach the callback with {@link RequestCoalescer#detachAll}
+     * @param priority     priority of the network request; a page already in flight at a lower
+     *                     priority is expedited
+     * @param isSuggestion count the network request as a suggestion request
+     */
+    private void attachTitlePage(
+            final String keyword,
+            final int page,
+            final Object owner,
+            final Request.Priority priority,
+            final RequestCoalescer.Callback<SearchResults> callback,
+            final boolean isSuggestion) {
+        final String url = titleSearchUrl(keyword, page);
+        final String cacheKey = ResponseCache.titleKey(keyword, page);
+        Log.v(TAG, "attachTitlePage: " + url);
+        mTitleCalls.attach(url, owner, callback, new RequestCoalescer.Starter<SearchResults>() {
+            @Override
+            public void start(final RequestCoalescer.Call<SearchResults> call) {
+                call.setPriority(priority);
+                // while the network is failing, an expired page beats none
+                lookupCache(cacheKey, !mTitleBreaker.isClosed(), new CacheLookup<SearchResults>(
+                        TITLE_PARSER) {
+                    @Override
+                    void onResult(SearchResults searchResults, boolean isStale) {
+                        if (call.isDone()) {
+                            return;
                         }
-                    },
-                    new Response.ErrorListener() {
-                        @Override
-                        public void onErrorResponse(VolleyError error) {
-                            Log.d(TAG, "queueSearchByTitle onErrorResponse: " + error);
-                            if (titleSearchListener != null) {
-                                titleSearchListener.onError(error);
+                        if (searchResults != null) {
+                            Log.d(TAG, "attachTitlePage cache hit, stale=" + isStale);
+                            call.complete(searchResults);
+                            if (isStale && mTitleBreaker.isClosed()) {
+                                // refresh the cache only, the page is already shown
+                                TitleSearchRequest request = new TitleSearchRequest(
+                                        url, mResponseCache, cacheKey, null, null);
+                                request.setPriority(Request.Priority.LOW);
+                                mRequestQueue.add(request);
+                            }
+                        } else {
+                            if (isSuggestion) {
+                                mSuggestionRequests++;
                             }
+                            queueTitleRequest(url, cacheKey, call, 1);
+                        }
+                    }
+                });
+            }
+        });
+        expedite(mTitleCalls.getCall(url), priority);
+    }
+
+    /**
+     * Suggest titles for a partially typed keyword: previously seen titles right away, then the
+     * first page of results from the network. Suggestions still in flight for an earlier keyword
+     * are cancelled, and their late responses are discarded. Callers are expected to debounce
+     * keystrokes before calling this.
+     */
+    public void suggestTitles(final String keyword, final SuggestionListener listener) {
+        cancelSuggestions();
+        mSuggestionQueries++;
+        final Object generation = new Object();
+        mSuggestionGeneration = generation;
+
+        final List<SearchItem> localResults =
+                mTitleIndex.query(keyword, PagePrefetcher.PAGE_SIZE);
+        if (!localResults.isEmpty()) {
+            listener.onSuggestions(keyword, localResults);
+        }
+
+        attachTitlePage(keyword, 1, generation, Request.Priority.IMMEDIATE,
+                new RequestCoalescer.Callback<SearchResults>() {
+                    @Override
+                    public void onSuccess(SearchResults searchResults) {
+                        if (generation != mSuggestionGeneration) {
+                            Log.v(TAG, "discarding suggestions for '" + keyword + "'");
+                            return;
+                        }
+                        mSuggestionGeneration = null;
+                        if (TitleSearchRequest.isSuccessful(searchResults)) {
+                            mTitleIndex.add(searchResults.Search);
+                            listener.onSuggestions(keyword, searchResults.Search);
+                        } else {
+                            listener.onSuggestions(keyword, Collections.<SearchItem>emptyList());
+                        }
+                    }
+
+                    @Override
+                    public void onError(VolleyError error) {
+                        if (generation != mSuggestionGeneration) {
+                            return;
                         }
-                    });
-            mRequestQueue.add(request);
+                        mSuggestionGeneration = null;
+                        listener.onError(error);
+                    }
+                }, true);
+    }
+
+    /**
+     * Cancel the suggestions in flight; requests shared with a title search stay in the queue.
+     */
+    public void cancelSuggestions() {
+        if (mSuggestionGeneration != null) {
+            mTitleCalls.detachAll(mSuggestionGeneration, true);
+            mSuggestionGeneration = null;
+        }
+    }
+
+    /**
+     * Count a keystroke of search-as-you-type, to compare with the number of requests it caused.
+     */
+    public void noteSuggestionKeystroke() {
+        mSuggestionKeystrokes++;
+    }
+
+    /**
+     * @return keystrokes, debounced suggestion queries and the network requests they issued
+     */
+    public String getSuggestionStats() {
+        return "keystrokes=" + mSuggestionKeystrokes
+                + ", queries=" + mSuggestionQueries
+                + ", requests=" + mSuggestionRequests
+                + ", requestsPerKeystroke=" + (mSuggestionKeystrokes > 0
+                ? (float) mSuggestionRequests / mSuggestionKeystrokes
+                : 0f);
+    }
+
+    /**
+     * @param attempt number of this network attempt, starting at 1
+     */
+    private void queueTitleRequest(
+            final String url,
+            final String cacheKey,
+            final RequestCoalescer.Call<SearchResults> call,
+            final int attempt) {
+        if (!mTitleBreaker.allowRequest()) {
+            lookupCache(cacheKey, true,
+                    new ExpiredFallback<>(call, new CircuitBreaker.OpenError(mTitleBreaker),
+                            TITLE_PARSER));
+            return;
+        }
+        TitleSearchRequest request = new TitleSearchRequest(
+                url,
+                mResponseCache,
+                cacheKey,
+                new Response.Listener<SearchResults>() {
+                    @Override
+                    public void onResponse(SearchResults searchResults) {
+                        Log.d(TAG, "queueTitleRequest onResponse: " + url);
+                        mTitleBreaker.onSuccess();
+                        call.complete(searchResults);
+                    }
+                },
+                new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "queueTitleRequest onErrorResponse: " + error);
+                        onAttemptFailed(mTitleBreaker, call, attempt, error, new Runnable() {
+                            @Override
+                            public void run() {
+                                queueTitleRequest(url, cacheKey, call, attempt + 1);
+                            }
+                        }, cacheKey, TITLE_PARSER);
+                    }
+                });
+        request.setPriority(call.getPriority());
+        call.setRequest(request);
+        mRequestQueue.add(request);
+    }
+
+    /**
+     * Retry a lookup after a failed network attempt if the failure looks transient, waiting a
+     * jittered, exponentially growing delay first. Otherwise, or once the attempts are used up,
+     * the lookup falls back to an expired cache entry or fails.
+     */
+    private <T> void onAttemptFailed(
+            final CircuitBreaker breaker,
+            final RequestCoalescer.Call<T> call,
+            final int attempt,
+            final VolleyError error,
+            final Runnable retry,
+            final String cacheKey,
+            final Parser<T> parser) {
+        breaker.onFailure(error);
+        if (call.isDone()) {
+            return;
+        }
+        if (attempt < MAX_ATTEMPTS && CircuitBreaker.isTransient(error)
+                && breaker.getRemainingOpenMs() == 0) {
+            final long delayMs = breaker.nextRetryDelayMs(attempt - 1);
+            Log.d(TAG, "retrying in " + delayMs + " ms after attempt " + attempt);
+            mMainHandler.postDelayed(new Runnable() {
+                @Override
+                public void run() {
+                    // the call is done if every subscriber went away meanwhile
+                    if (!call.isDone()) {
+                        retry.run();
+                    }
+                }
+            }, delayMs);
+        } else {
+            lookupCache(cacheKey, true, new ExpiredFallback<>(call, error, parser));
+        }
+    }
+
+    /**
+     * Retry the failed title pages once the title search circuit lets requests through again,
+     * backing off further with every retry that fails as well. Errors that won't go away by
+     * themselves, e.g. an invalid API key, and failures past {@link #MAX_PAGE_RETRIES} are not
+     * retried; the listeners have been told about them and the pages are requested again when the
+     * user scrolls.
+     */
+    private void scheduleFailedPageRetry(VolleyError error) {
+        if (!CircuitBreaker.isTransient(error) && !(error instanceof CircuitBreaker.OpenError)) {
+            Log.d(TAG, "not retrying failed pages after " + error);
+            return;
+        }
+        if (mPageRetries >= MAX_PAGE_RETRIES) {
+            Log.d(TAG, "giving up on failed pages after " + mPageRetries + " retries");
+            return;
         }
+        final long delayMs = Math.max(mTitleBreaker.getRemainingOpenMs(),
+                mTitleBreaker.nextRetryDelayMs(mPageRetries++));
+        Log.d(TAG, "retrying failed pages in " + delayMs + " ms");
+        mMainHandler.removeCallbacks(mRetryFailedPages);
+        mMainHandler.postDelayed(mRetryFailedPages, delayMs);
     }
 
-    private void parseTitleSearchResults(final String response) {
-        ObjectMapper mapper = new ObjectMapper();
+    /**
+     * Raise the priority of a lookup in flight, including its network request if that is still
+     * held back by the scheduler.
+     */
+    private void expedite(RequestCoalescer.Call<?> call, Request.Priority priority) {
+        if (call == null || call.getPriority().ordinal() >= priority.ordinal()) {
+            return;
+        }
+        call.setPriority(priority);
+        if (call.getRequest() != null) {
+            mRequestQueue.expedite(call.getRequest(), priority);
+        }
+    }
+
+    private String titleSearchUrl(String keyword, int page) {
+        String encodedKeyword = null;
         try {
-            SearchResults searchResults = mapper.readValue(response, SearchResults.class);
-            if (searchResults != null) {
-                if (searchResults.Response.equalsIgnoreCase("true")) {
-                    Log.d(TAG, "total items: " + searchResults.totalResults);
-                    mTotalItems = searchResults.totalResults;
-                    Log.d(TAG, "adding " + searchResults.Search.size() + " items");
-                    mSearchItems.addAll(searchResults.Search);
-                    Log.d(TAG, "current total: " + mSearchItems.size());
+            encodedKeyword = URLEncoder.encode(keyword, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            Log.e(TAG, "error encoding keyword: '" + keyword + "', " + e.getLocalizedMessage());
+        }
+        return mContext.getString(R.string.title_search_url, mBaseUrl, encodedKeyword, page);
+    }
+
+    private void applyTitleSearchResults(final SearchResults searchResults) {
+        if (searchResults != null) {
+            // once the network has answered, it replaces the local results
+            final boolean isReplacingLocalResults = mIsShowingLocalResults;
+            mIsShowingLocalResults = false;
+            if (TitleSearchRequest.isSuccessful(searchResults)) {
+                mTitleIndex.add(searchResults.Search);
+                Log.d(TAG, "total items: " + searchResults.totalResults);
+                mTotalItems = searchResults.totalResults;
+                Log.d(TAG, "adding " + searchResults.Search.size() + " items");
+                if (isReplacingLocalResults) {
+                    replaceResults(searchResults.Search);
                 } else {
-                    Log.d(TAG, "response was false: error=" + searchResults.Error);
-                    mSearchItems.clear();
-                    mTotalItems = 0;
+                    appendResults(searchResults.Search);
                 }
+                Log.d(TAG, "current total: " + mResults.get().size());
+            } else {
+                Log.d(TAG, "response was false: error=" + searchResults.Error);
+                mResults.clear();
+                mTotalItems = 0;
             }
-        } catch (IOException e) {
-            Log.e(TAG, "error parsing Title search Response: " + e);
         }
     }
 
+    /**
+     * Look up the details of a title. Details that are already in memory are delivered
+     * immediately; if the same title is already being looked up, the listener is attached to that
+     * lookup instead of starting another one.
+     */
     public void queueSearchById(
             final Context context,
             final String imdbId,
             final IdSearchListener idSearchListener) {
-        String encodedKeyword = null;
-        try {
-            encodedKeyword = URLEncoder.encode(imdbId, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            Log.e(TAG, "error encoding imdbId: '" + imdbId + "', " + e.getLocalizedMessage());
+        final MovieDetails cached = mDetailsCache.get(imdbId);
+        if (cached != null) {
+            Log.d(TAG, "queueSearchById memory hit: " + imdbId);
+            if (idSearchListener != null) {
+                idSearchListener.onSuccess(cached);
+            }
+            return;
         }
-
-        String url = context.getString(R.string.id_search_url, encodedKeyword);
-        Log.v(TAG, "queueSearchById: " + url);
-        StringRequest request = new StringRequest(
-                Request.Method.GET,
-                url,
-                new Response.Listener<String>() {
+        lookupDetails(imdbId, idSearchListener, Request.Priority.HIGH,
+                new RequestCoalescer.Callback<MovieDetails>() {
                     @Override
-                    public void onResponse(String response) {
-                        Log.d(TAG, "queueSearchById: onResponse");
-                        MovieDetails movieDetails = parseIdSearchResults(response, imdbId);
+                    public void onSuccess(MovieDetails movieDetails) {
                         if (idSearchListener != null) {
                             idSearchListener.onSuccess(movieDetails);
                         }
                     }
-                },
-                new Response.ErrorListener() {
+
                     @Override
-                    public void onErrorResponse(VolleyError error) {
-                        Log.d(TAG, "queueSearchById: onErrorResponse " + error);
+                    public void onError(VolleyError error) {
                         if (idSearchListener != null) {
                             idSearchListener.onError(error);
                         }
                     }
                 });
+    }
+
+    /**
+     * Stop delivering the details of a title to the listener.
+     *
+     * @param cancelIfUnused cancel the lookup if no other listener is waiting for it
+     */
+    public void cancelSearchById(
+            final String imdbId,
+            final IdSearchListener idSearchListener,
+            boolean cancelIfUnused) {
+        mDetailsCalls.detach(idSearchUrl(imdbId), idSearchListener, cancelIfUnused);
+    }
+
+    /**
+     * Speculatively load the details of the given titles at low priority so that they can be
+     * shown instantly later. The list replaces the one from the previous call: prefetches of
+     * titles that are no longer wanted are cancelled unless a caller of
+     * {@link #queueSearchById(Context, String, IdSearchListener)} is waiting for them, and at most
+     * {@link #MAX_BATCH_LOOKUPS} are in flight at any time.
+     *
+     * @param imdbIds titles to prefetch, most important first
+     */
+    public void prefetchDetails(final List<String> imdbIds) {
+        final DetailsBatch previous = mDetailsPrefetch;
+        mDetailsPrefetch = new DetailsBatch(imdbIds, MAX_BATCH_LOOKUPS, mPrefetchLoader,
+                PREFETCH_LISTENER);
+        // titles still wanted that the previous batch has in flight are attached to before it
+        // lets go of them, so that they are not cancelled and started over
+        mDetailsPrefetch.start();
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Load the details of a title from the response cache or the network, coalescing with any
+     * lookup of the same title already in flight. Successful results are kept in memory.
+     */
+    private void lookupDetails(
+            final String imdbId,
+            final Object owner,
+            final Request.Priority priority,
+            final RequestCoalescer.Callback<MovieDetails> callback) {
+        final String url = idSearchUrl(imdbId);
+        final String cacheKey = ResponseCache.idKey(imdbId);
+        Log.v(TAG, "lookupDetails: " + url);
+        mDetailsCalls.attach(url, owner, callback, new RequestCoalescer.Starter<MovieDetails>() {
+            @Override
+            public void start(final RequestCoalescer.Call<MovieDetails> call) {
+                call.setPriority(priority);
+                lookupCache(cacheKey, !mDetailsBreaker.isClosed(), new CacheLookup<MovieDetails>(
+                        DETAILS_PARSER) {
+                    @Override
+                    void onResult(MovieDetails movieDetails, boolean isStale) {
+                        if (call.isDone()) {
+                            return;
+                        }
+                        if (movieDetails != null) {
+                            Log.d(TAG, "lookupDetails cache hit, stale=" + isStale);
+                            mDetailsCache.put(imdbId, movieDetails);
+                            call.complete(movieDetails);
+                            if (isStale && mDetailsBreaker.isClosed()) {
+                                IdSearchRequest request = new IdSearchRequest(
+                                        url, mResponseCache, cacheKey, null, null);
+                                request.setPriority(Request.Priority.LOW);
+                                mRequestQueue.add(request);
+                            }
+                        } else {
+                            queueIdRequest(url, cacheKey, imdbId, call, 1);
+                        }
+                    }
+                });
+            }
+        });
+        // e.g. the user opens a title whose details are being prefetched
+        expedite(mDetailsCalls.getCall(url), priority);
+    }
+
+    private void queueIdRequest(
+            final String url,
+            final String cacheKey,
+            final String imdbId,
+            final RequestCoalescer.Call<MovieDetails> call,
+            final int attempt) {
+        if (!mDetailsBreaker.allowRequest()) {
+            lookupCache(cacheKey, true,
+                    new ExpiredFallback<>(call, new CircuitBreaker.OpenError(mDetailsBreaker),
+                            DETAILS_PARSER));
+            return;
+        }
+        IdSearchRequest request = new IdSearchRequest(
+                url,
+                mResponseCache,
+                cacheKey,
+                new Response.Listener<MovieDetails>() {
+                    @Override
+                    public void onResponse(MovieDetails movieDetails) {
+                        Log.d(TAG, "queueIdRequest: onResponse");
+                        mDetailsBreaker.onSuccess();
+                        if (IdSearchRequest.isSuccessful(movieDetails)) {
+                            mDetailsCache.put(imdbId, movieDetails);
+                        }
+                        call.complete(movieDetails);
+                    }
+                },
+                new Response.ErrorListener() {
+                    @Override
+                    public void onErrorResponse(VolleyError error) {
+                        Log.d(TAG, "queueIdRequest: onErrorResponse " + error);
+                        onAttemptFailed(mDetailsBreaker, call, attempt, error, new Runnable() {
+                            @Override
+                            public void run() {
+                                queueIdRequest(url, cacheKey, imdbId, call, attempt + 1);
+                            }
+                        }, cacheKey, DETAILS_PARSER);
+                    }
+                });
+        request.setPriority(call.getPriority());
+        call.setRequest(request);
         mRequestQueue.add(request);
     }
 
-    private MovieDetails parseIdSearchResults(final String response, final String imdbId) {
-        MovieDetails movieDetails = new MovieDetails();
-        ObjectMapper mapper = new ObjectMapper();
+    private String idSearchUrl(String imdbId) {
+        String encodedKeyword = null;
         try {
-            JsonNode tree = mapper.readTree(response);
-            final Iterator<Map.Entry<String, JsonNode>> fields = tree.fields();
-            while (fields.hasNext()) {
-                final Map.Entry<String, JsonNode> entry = fields.next();
-                if (entry.getValue().isTextual()) {
-                    final String value = entry.getValue().asText();
-                    if (entry.getKey().equalsIgnoreCase("response")) {
-                        movieDetails.response = value;
-                    } else if (entry.getKey().equalsIgnoreCase("poster")) {
-                        movieDetails.poster = value;
-                    } else if (entry.getKey().equalsIgnoreCase("title")) {
-                        movieDetails.title = value;
-                    } else {
-                        movieDetails.data.add(new Pair<>(entry.getKey(), value));
+            encodedKeyword = URLEncoder.encode(imdbId, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            Log.e(TAG, "error encoding imdbId: '" + imdbId + "', " + e.getLocalizedMessage());
+        }
+        return mContext.getString(R.string.id_search_url, mBaseUrl, encodedKeyword);
+    }
+
+    /**
+     * @return rough number of bytes held by the Strings of the details
+     */
+    private static int estimateSize(MovieDetails movieDetails) {
+        int size = 128 + length(movieDetails.title) + length(movieDetails.poster)
+                + length(movieDetails.response);
+        // field names are shared with the parser's symbol table
+        for (int i = 0; i < movieDetails.getFieldCount(); i++) {
+            size += 8 + length(movieDetails.getFieldValue(i));
+        }
+        for (MovieDetails.Rating rating : movieDetails.ratings) {
+            size += 24 + length(rating.source) + length(rating.value);
+        }
+        return size;
+    }
+
+    private static int length(String value) {
+        return value != null ? 40 + 2 * value.length() : 0;
+    }
+
+    /**
+     * Read and decode a cache entry on the cache thread, then deliver the result (or null on a
+     * miss) on the main thread.
+     *
+     * @param includeExpired also accept an entry past the stale window
+     */
+    private <T> void lookupCache(
+            final String cacheKey,
+            final boolean includeExpired,
+            final CacheLookup<T> lookup) {
+        mCacheExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final ResponseCache.Entry entry = mResponseCache.get(cacheKey, includeExpired);
+                T parsed = null;
+                if (entry != null) {
+                    try {
+                        final long start = System.nanoTime();
+                        parsed = lookup.parse(ByteBuffer.wrap(entry.body));
+                        PerfMetrics.instance().cacheDecodeUs.record(
+                                (System.nanoTime() - start) / 1000);
+                    } catch (IOException e) {
+                        Log.e(TAG, "error parsing cached response '" + cacheKey + "': " + e);
                     }
                 }
+                final T result = parsed;
+                final boolean isStale = entry != null && entry.isStale();
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        lookup.onResult(result, isStale);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Converts a cached response body on the cache thread and receives the result on the main
+     * thread.
+     */
+    private abstract static class CacheLookup<T> {
+        private final Parser<T> mParser;
+
+        CacheLookup(Parser<T> parser) {
+            mParser = parser;
+        }
+
+        final T parse(ByteBuffer body) throws IOException {
+            return mParser.parse(body);
+        }
+
+        abstract void onResult(T result, boolean isStale);
+    }
+
+    private interface Parser<T> {
+        T parse(ByteBuffer body) throws IOException;
+    }
+
+    private static final Parser<SearchResults> TITLE_PARSER = new Parser<SearchResults>() {
+        @Override
+        public SearchResults parse(ByteBuffer body) throws IOException {
+            return OmdbCodec.decodeSearchResults(body);
+        }
+    };
+
+    private static final Parser<MovieDetails> DETAILS_PARSER = new Parser<MovieDetails>() {
+        @Override
+        public MovieDetails parse(ByteBuffer body) throws IOException {
+            return OmdbCodec.decodeMovieDetails(body);
+        }
+    };
+
+    /**
+     * The prefetched details only need to end up in memory, which the lookups see to.
+     */
+    private static final DetailsBatch.Listener PREFETCH_LISTENER = new DetailsBatch.Listener() {
+        @Override
+        public void onDetails(String imdbId, MovieDetails movieDetails) {
+        }
+
+        @Override
+        public void onError(String imdbId, VolleyError error) {
+            Log.v(TAG, "prefetch of " + imdbId + " failed: " + error);
+        }
+
+        @Override
+        public void onProgress(int done, int total) {
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    };
+
+    /**
+     * Completes a lookup the network could not answer with whatever the cache still has, however
+     * old, or fails it with the network error.
+     */
+    private static final class ExpiredFallback<T> extends CacheLookup<T> {
+        private final RequestCoalescer.Call<T> mCall;
+        private final VolleyError mError;
+
+        ExpiredFallback(RequestCoalescer.Call<T> call, VolleyError error, Parser<T> parser) {
+            super(parser);
+            mCall = call;
+            mError = error;
+        }
+
+        @Override
+        void onResult(T result, boolean isStale) {
+            if (mCall.isDone()) {
+                return;
+            }
+            if (result != null) {
+                Log.d(TAG, "serving cached response after " + mError);
+                mCall.complete(result);
+            } else {
+                mCall.fail(mError);
             }
-        } catch (IOException e) {
-            Log.e(TAG, "could not read IdSearchResults: " + e);
         }
-        return movieDetails;
     }
 
     public interface TitleSearchListener {
-        void onError(VolleyError error);
+        /**
+         * @param page the title search page that failed, which may be one loaded ahead of those
+         *             asked for
+         */
+        void onError(int page, VolleyError error);
 
         void onSuccess();
     }
 
+    public interface SessionListener {
+        /**
+         * The results are back; scroll to the saved position.
+         */
+        void onSessionRestored(int position, int offset);
+
+        /**
+         * There was no session of the keyword to restore; search again.
+         */
+        void onSessionUnavailable();
+    }
+
     public interface IdSearchListener {
         void onError(VolleyError error);
 
         void onSuccess(MovieDetails movieDetails);
     }
+
+    public interface SuggestionListener {
+        void onError(VolleyError error);
+
+        /**
+         * @param suggestions replace the suggestions shown so far for the keyword
+         */
+        void onSuggestions(String keyword, List<SearchItem> suggestions);
+    }
 }
@@ -0,0 +1,31 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.NetworkResponse;
+import com.android.volley.Request;
+import com.android.volley.VolleyError;
+import com.android.volley.toolbox.BasicNetwork;
+import com.android.volley.toolbox.HttpStack;
+
+/**
+ * BasicNetwork that records the latency and size of every request in {@link PerfMetrics}. The
+ * phases of the HTTP exchange itself are recorded by {@link OkHttpStack}.
+ */
+final class TimingNetwork extends BasicNetwork {
+
+    private final PerfMetrics mMetrics = PerfMetrics.instance();
+
+    TimingNetwork(HttpStack httpStack) {
+        super(httpStack);
+    }
+
+    @Override
+    public NetworkResponse performRequest(Request<?> request) throws VolleyError {
+        final long start = System.nanoTime();
+        final NetworkResponse response = super.performRequest(request);
+        mMetrics.networkMs.record((System.nanoTime() - start) / 1000000);
+        if (response.data != null) {
+            mMetrics.responseBytes.record(response.data.length);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,440 @@
+package com.jasontoradler.moviesearch.network;
+
+import android.util.Log;
+
+import com.jasontoradler.moviesearch.data.SearchItem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Local inverted index over the titles of every search result seen so far, so that a keyword can
+ * be answered instantly (and offline) before the network responds. Titles are split into
+ * lower-case, accent-free tokens; a query matches a title when every query token is a prefix of
+ * one of its tokens.
+ * <p>
+ * The index lives in memory and is persisted as an append-only file of results, which is replayed
+ * when the index is created and rewritten when it holds too many superseded records. All disk I/O
+ * happens on the given executor; the other methods may be called from any thread.
+ */
+final class TitleIndex {
+
+    private static final String TAG = "TitleIndex";
+    private static final int FILE_VERSION = 1;
+    /**
+     * Stop indexing new titles beyond this many, to bound memory and the size of the file.
+     */
+    private static final int MAX_DOCUMENTS = 20000;
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    private final List<SearchItem> mDocuments = new ArrayList<>();
+    /**
+     * Normalized title of each document, so that queries don't normalize the titles they match.
+     */
+    private final List<String> mNormalizedTitles = new ArrayList<>();
+    private final Map<String, Integer> mDocumentIds = new HashMap<>();
+    private final TreeMap<String, BitSet> mPostings = new TreeMap<>();
+    /**
+     * Number of records in the file, including the ones superseded by a later record.
+     */
+    private int mRecordCount;
+
+    TitleIndex(File file, Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * Index the items, replacing earlier versions of the same imdbID, and append them to the file.
+     */
+    void add(List<SearchItem> items) {
+        if (items == null || items.isEmpty()) {
+            return;
+        }
+        // copy now, the caller keeps using its items
+        final List<SearchItem> added = new ArrayList<>(items.size());
+        synchronized (this) {
+            for (SearchItem item : items) {
+                final SearchItem copy = copyOf(item);
+                if (copy != null && index(copy)) {
+                    added.add(copy);
+                }
+            }
+        }
+        if (!added.isEmpty()) {
+            mExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(added);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return up to maxResults indexed items matching the query, titles starting with the query
+     * first, otherwise in the order they were first indexed
+     */
+    List<SearchItem> query(String query, int maxResults) {
+        final List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            return Collections.emptyList();
+        }
+        final long start = System.nanoTime();
+        final String normalizedQuery = normalize(query).trim();
+        final List<SearchItem> prefixMatches = new ArrayList<>();
+        final List<SearchItem> otherMatches = new ArrayList<>();
+        synchronized (this) {
+            BitSet matches = null;
+            for (String token : tokens) {
+                final BitSet tokenMatches = prefixMatches(token);
+                if (matches == null) {
+                    matches = tokenMatches;
+                } else {
+                    matches.and(tokenMatches);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+            for (int id = matches.nextSetBit(0);
+                 id >= 0 && prefixMatches.size() < maxResults;
+                 id = matches.nextSetBit(id + 1)) {
+                if (mNormalizedTitles.get(id).startsWith(normalizedQuery)) {
+                    prefixMatches.add(copyOf(mDocuments.get(id)));
+                } else if (otherMatches.size() < maxResults) {
+                    otherMatches.add(copyOf(mDocuments.get(id)));
+                }
+            }
+        }
+        prefixMatches.addAll(otherMatches);
+        final List<SearchItem> results = prefixMatches.size() > maxResults
+                ? new ArrayList<>(prefixMatches.subList(0, maxResults))
+                : prefixMatches;
+        Log.v(TAG, "query '" + query + "': " + results.size() + " results in "
+                + (System.nanoTime() - start) / 1000 + "us");
+        return results;
+    }
+
+    synchronized int size() {
+        return mDocuments.size();
+    }
+
+    /**
+     * @return union of the documents having a token that starts with the prefix
+     */
+    private BitSet prefixMatches(String prefix) {
+        final BitSet matches = new BitSet();
+        for (BitSet documents
+                : mPostings.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+            matches.or(documents);
+        }
+        return matches;
+    }
+
+    /**
+     * @return true if the item is new or changed
+     */
+    private boolean index(SearchItem item) {
+        final Integer existing = mDocumentIds.get(item.imdbID);
+        if (existing != null) {
+            final SearchItem old = mDocuments.get(existing);
+            if (sameValues(old, item)) {
+                return false;
+            }
+            for (String token : tokenize(old.Title)) {
+                final BitSet documents = mPostings.get(token);
+                if (documents == null) {
+                    // repeated token, already removed
+                    continue;
+                }
+                documents.clear(existing);
+                if (documents.isEmpty()) {
+                    mPostings.remove(token);
+                }
+            }
+            mDocuments.set(existing, item);
+            mNormalizedTitles.set(existing, normalize(item.Title));
+            addPostings(item, existing);
+            return true;
+        }
+        if (mDocuments.size() >= MAX_DOCUMENTS) {
+            return false;
+        }
+        final int id = mDocuments.size();
+        mDocuments.add(item);
+        mNormalizedTitles.add(normalize(item.Title));
+        mDocumentIds.put(item.imdbID, id);
+        addPostings(item, id);
+        return true;
+    }
+
+    private void addPostings(SearchItem item, int id) {
+        for (String token : tokenize(item.Title)) {
+            BitSet documents = mPostings.get(token);
+            if (documents == null) {
+                documents = new BitSet();
+                mPostings.put(token, documents);
+            }
+            documents.set(id);
+        }
+    }
+
+    private void load() {
+        if (!mFile.exists()) {
+            return;
+        }
+        final long start = System.currentTimeMillis();
+        int records = 0;
+        // length of the header and the records read completely
+        long validLength = 0;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (in.readInt() != FILE_VERSION) {
+                Log.d(TAG, "discarding index of another version");
+                in.close();
+                in = null;
+                mFile.delete();
+                return;
+            }
+            validLength = 4;
+            while (true) {
+                final SearchItem item;
+                try {
+                    item = readItem(in);
+                } catch (EOFException e) {
+                    // the end of the file, or a partially written record at its end
+                    break;
+                }
+                validLength += recordLength(item);
+                records++;
+                synchronized (this) {
+                    index(item);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error loading index: " + e);
+        } finally {
+            close(in);
+        }
+        if (validLength == 0) {
+            // not even the header is complete; the next append starts a new file
+            mFile.delete();
+        } else if (validLength < mFile.length()) {
+            // cut off a partially written record, so that it loses only itself rather than every
+            // record appended after it
+            truncate(validLength);
+        }
+        synchronized (this) {
+            mRecordCount = records;
+            Log.d(TAG, "loaded " + mDocuments.size() + " titles from " + records + " records in "
+                    + (System.currentTimeMillis() - start) + "ms");
+        }
+        compactIfNeeded();
+    }
+
+    private void append(List<SearchItem> items) {
+        final boolean isNew = !mFile.exists();
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(mFile, true)));
+            if (isNew) {
+                out.writeInt(FILE_VERSION);
+            }
+            for (SearchItem item : items) {
+                writeItem(out, item);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error appending to index: " + e);
+        } finally {
+            close(out);
+        }
+        synchronized (this) {
+            mRecordCount += items.size();
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * Rewrite the file without superseded records once they make up half of it.
+     */
+    private void compactIfNeeded() {
+        final List<SearchItem> documents;
+        synchronized (this) {
+            if (mRecordCount <= 2 * mDocuments.size()) {
+                return;
+            }
+            documents = new ArrayList<>(mDocuments);
+        }
+        final File temp = new File(mFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(FILE_VERSION);
+            for (SearchItem item : documents) {
+                writeItem(out, item);
+            }
+            out.close();
+            out = null;
+            if (temp.renameTo(mFile)) {
+                synchronized (this) {
+                    // items indexed meanwhile are appended to the new file by a later task
+                    mRecordCount = documents.size();
+                }
+                Log.d(TAG, "compacted index to " + documents.size() + " records");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "error compacting index: " + e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private void truncate(long length) {
+        Log.d(TAG, "truncating index from " + mFile.length() + " to " + length + " bytes");
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(mFile, "rw");
+            file.getChannel().truncate(length);
+        } catch (IOException e) {
+            Log.e(TAG, "error truncating index: " + e);
+        } finally {
+            close(file);
+        }
+    }
+
+    /**
+     * @return number of bytes {@link #writeItem} writes for the item
+     */
+    private static long recordLength(SearchItem item) {
+        long length = 0;
+        for (String value : new String[]{
+                item.imdbID, item.Title, item.Year, item.Type, item.Poster}) {
+            // the null flag, then the length and modified UTF-8 bytes of writeUTF
+            length += 1;
+            if (value != null) {
+                length += 2;
+                for (int i = 0; i < value.length(); i++) {
+                    final char c = value.charAt(i);
+                    length += c >= 0x0001 && c <= 0x007f ? 1 : (c <= 0x07ff ? 2 : 3);
+                }
+            }
+        }
+        return length;
+    }
+
+    private static void writeItem(DataOutputStream out, SearchItem item) throws IOException {
+        writeString(out, item.imdbID);
+        writeString(out, item.Title);
+        writeString(out, item.Year);
+        writeString(out, item.Type);
+        writeString(out, item.Poster);
+    }
+
+    private static SearchItem readItem(DataInputStream in) throws IOException {
+        final SearchItem item = new SearchItem();
+        item.imdbID = readString(in);
+        item.Title = readString(in);
+        item.Year = readString(in);
+        item.Type = readString(in);
+        item.Poster = readString(in);
+        return item;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void close(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                Log.e(TAG, "error closing index file: " + e);
+            }
+        }
+    }
+
+    /**
+     * @return a copy without the favorite state, or null if the item cannot be indexed
+     */
+    private static SearchItem copyOf(SearchItem item) {
+        if (item == null || item.imdbID == null || item.Title == null) {
+            return null;
+        }
+        final SearchItem copy = new SearchItem();
+        copy.imdbID = item.imdbID;
+        copy.Title = item.Title;
+        copy.Year = item.Year;
+        copy.Type = item.Type;
+        copy.Poster = item.Poster;
+        return copy;
+    }
+
+    private static boolean sameValues(SearchItem a, SearchItem b) {
+        return equal(a.Title, b.Title) && equal(a.Year, b.Year)
+                && equal(a.Type, b.Type) && equal(a.Poster, b.Poster);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * @return lower-case text with accents removed
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.US);
+    }
+
+    static List<String> tokenize(String text) {
+        final List<String> tokens = new ArrayList<>();
+        for (String token : normalize(text).split("[^\\p{L}\\p{N}]+")) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
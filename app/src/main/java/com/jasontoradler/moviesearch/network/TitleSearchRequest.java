@@ -0,0 +1,41 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.Response;
+import com.jasontoradler.moviesearch.data.OmdbCodec;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import java.io.IOException;
+
+/**
+ * Fetch one page of title search results.
+ */
+final class TitleSearchRequest extends OmdbRequest<SearchResults> {
+
+    TitleSearchRequest(
+            String url,
+            ResponseCache responseCache,
+            String cacheKey,
+            Response.Listener<SearchResults> listener,
+            Response.ErrorListener errorListener) {
+        super(url, responseCache, cacheKey, listener, errorListener);
+    }
+
+    @Override
+    SearchResults parse(byte[] data) throws IOException {
+        return OmdbParser.parseSearchResults(data);
+    }
+
+    @Override
+    byte[] encode(SearchResults result) {
+        return OmdbCodec.encodeSearchResults(result);
+    }
+
+    @Override
+    boolean isSuccess(SearchResults result) {
+        return isSuccessful(result);
+    }
+
+    static boolean isSuccessful(SearchResults result) {
+        return result != null && "true".equalsIgnoreCase(result.Response);
+    }
+}
@@ -26,8 +26,15 @@ public abstract class EndlessScrollListener extends RecyclerView.OnScrollListene
             mPreviousTotalItemCount = totalItemCount;
         }
 
-        // if loading is finished and view is scrolled past threshold, increment the page and
-        // kick off a new load
+        loadMoreIfNeeded();
+    }
+
+    /**
+     * If loading is finished and view is scrolled past threshold, increment the page and kick off
+     * a new load.
+     */
+    private void loadMoreIfNeeded() {
+        int totalItemCount = mLayoutManager.getItemCount();
         int lastVisibleItemPosition = ((LinearLayoutManager) mLayoutManager).findLastVisibleItemPosition();
         if (!mLoading && (lastVisibleItemPosition + mVisibleThreshold) > totalItemCount) {
             mCurrentPage++;
@@ -50,6 +57,35 @@ public abstract class EndlessScrollListener extends RecyclerView.OnScrollListene
         mVisibleThreshold = visibleThreshold;
     }
 
+    /**
+     * Call when a page has failed to load, so that scrolling further requests it again instead of
+     * waiting for it forever. Pages are shown in order, so a failed page up to the one last passed
+     * to {@link #onLoadMore(int)} holds that one back, and the listener rewinds to just before it;
+     * a page loaded ahead of that, which nobody is waiting for yet, is ignored.
+     *
+     * @param page the page that failed
+     */
+    public void onLoadFailed(int page) {
+        if (mLoading && page > 0 && page <= mCurrentPage) {
+            mCurrentPage = page - 1;
+            mLoading = false;
+        }
+    }
+
+    /**
+     * Call when a load started by {@link #onLoadMore(int)} has succeeded. A load is normally seen
+     * to finish by the number of items growing; when the loaded data added no items, e.g. because
+     * they are all filtered out, this finishes the load instead, and loads the next page right away
+     * if the list is still too short to scroll towards it.
+     */
+    public void onLoadFinished() {
+        if (mLoading && mLayoutManager.getItemCount() <= mPreviousTotalItemCount) {
+            mLoading = false;
+            mPreviousTotalItemCount = mLayoutManager.getItemCount();
+            loadMoreIfNeeded();
+        }
+    }
+
     protected void resetState() {
         mCurrentPage = 0;
         mPreviousTotalItemCount = 0;
@@ -0,0 +1,109 @@
+package com.jasontoradler.moviesearch.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.util.AttributeSet;
+import android.view.ViewGroup;
+
+import com.android.volley.toolbox.NetworkImageView;
+import com.jasontoradler.moviesearch.network.PosterPipeline;
+import com.jasontoradler.moviesearch.network.SearchTool;
+
+/**
+ * NetworkImageView of a fixed size. ImageView requests a layout whenever its image changes, since
+ * its size may depend on the image; with an exact width and height it does not, so the arrival of
+ * a poster only redraws the view instead of re-laying out the row and the list around it. The
+ * fixed size also lets the ImageLoader decode posters at the size they are shown.
+ * <p>
+ * The view reports the bitmap it shows to the {@link PosterPipeline}, so that the pipeline does
+ * not decode another poster into it while it is shown.
+ */
+public class PosterImageView extends NetworkImageView {
+
+    private final PosterPipeline mPipeline;
+    private boolean mIsSettingImage;
+    private Bitmap mShownBitmap;
+
+    public PosterImageView(Context context) {
+        super(context);
+        mPipeline = pipelineOf(this);
+    }
+
+    public PosterImageView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        mPipeline = pipelineOf(this);
+    }
+
+    public PosterImageView(Context context, AttributeSet attrs, int defStyle) {
+        super(context, attrs, defStyle);
+        mPipeline = pipelineOf(this);
+    }
+
+    private static PosterPipeline pipelineOf(PosterImageView view) {
+        return view.isInEditMode()
+                ? null
+                : SearchTool.instance(view.getContext()).getPosterPipeline();
+    }
+
+    @Override
+    public void setImageBitmap(Bitmap bm) {
+        mIsSettingImage = true;
+        super.setImageBitmap(bm);
+        mIsSettingImage = false;
+    }
+
+    @Override
+    public void setImageResource(int resId) {
+        mIsSettingImage = true;
+        super.setImageResource(resId);
+        mIsSettingImage = false;
+        updateShownBitmap();
+    }
+
+    @Override
+    public void setImageDrawable(Drawable drawable) {
+        mIsSettingImage = true;
+        super.setImageDrawable(drawable);
+        mIsSettingImage = false;
+        updateShownBitmap();
+    }
+
+    /**
+     * Tell the pipeline when the view starts or stops showing a bitmap. NetworkImageView clears
+     * the image when the view is detached, e.g. when its row moves to the recycled view pool.
+     */
+    private void updateShownBitmap() {
+        if (mPipeline == null) {
+            // called by the constructor of ImageView, or in the layout editor
+            return;
+        }
+        final Drawable drawable = getDrawable();
+        final Bitmap bitmap = drawable instanceof BitmapDrawable
+                ? ((BitmapDrawable) drawable).getBitmap()
+                : null;
+        if (bitmap == mShownBitmap) {
+            return;
+        }
+        if (mShownBitmap != null) {
+            mPipeline.onBitmapHidden(mShownBitmap);
+        }
+        mShownBitmap = bitmap;
+        if (bitmap != null) {
+            mPipeline.onBitmapShown(bitmap);
+        }
+    }
+
+    @Override
+    public void requestLayout() {
+        if (!mIsSettingImage || !hasFixedSize()) {
+            super.requestLayout();
+        }
+    }
+
+    private boolean hasFixedSize() {
+        final ViewGroup.LayoutParams params = getLayoutParams();
+        return params != null && params.width >= 0 && params.height >= 0;
+    }
+}
@@ -0,0 +1,157 @@
+package com.jasontoradler.moviesearch.ui;
+
+import android.content.Context;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.View;
+import android.view.ViewGroup;
+
+import com.jasontoradler.moviesearch.R;
+
+/**
+ * Single-level layout of a search result row: the poster at the start, the position at the top
+ * end, the heart centered at the end, and the title, year and type stacked between them. The
+ * height of the row follows from the fixed size of the poster alone, so every row is equally tall
+ * no matter what is bound to it, and each child is measured exactly once per pass.
+ * <p>
+ * Children are identified by their ids and honor their margins, which are read as the left and
+ * right margins of the left-to-right arrangement and mirrored along with it. Text that does not
+ * fit the row is clipped, so the text views should limit their number of lines.
+ */
+public class ResultRowLayout extends ViewGroup {
+
+    private View mPoster;
+    private View mPosition;
+    private View mHeart;
+    private View mTitle;
+    private View mYear;
+    private View mType;
+
+    public ResultRowLayout(Context context) {
+        super(context);
+    }
+
+    public ResultRowLayout(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public ResultRowLayout(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    protected void onFinishInflate() {
+        super.onFinishInflate();
+        mPoster = findViewById(R.id.moviePhoto);
+        mPosition = findViewById(R.id.position);
+        mHeart = findViewById(R.id.heartImage);
+        mTitle = findViewById(R.id.title);
+        mYear = findViewById(R.id.year);
+        mType = findViewById(R.id.type);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+
+        final MarginLayoutParams posterParams = (MarginLayoutParams) mPoster.getLayoutParams();
+        mPoster.measure(
+                MeasureSpec.makeMeasureSpec(posterParams.width, MeasureSpec.EXACTLY),
+                MeasureSpec.makeMeasureSpec(posterParams.height, MeasureSpec.EXACTLY));
+        final int height = getPaddingTop() + verticalSpace(mPoster) + getPaddingBottom();
+
+        final int unspecified = MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+        mPosition.measure(unspecified, unspecified);
+        mHeart.measure(unspecified, unspecified);
+
+        final int textWidth = MeasureSpec.makeMeasureSpec(textEnd(width) - textStart(),
+                MeasureSpec.EXACTLY);
+        mTitle.measure(textWidth, unspecified);
+        mYear.measure(textWidth, unspecified);
+        mType.measure(textWidth, unspecified);
+
+        setMeasuredDimension(width, height);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        final int width = r - l;
+        final int height = b - t;
+        final int top = getPaddingTop();
+        final int bottom = height - getPaddingBottom();
+
+        final MarginLayoutParams posterParams = (MarginLayoutParams) mPoster.getLayoutParams();
+        place(mPoster, width, getPaddingLeft() + posterParams.leftMargin,
+                centeredTop(mPoster, top, bottom));
+
+        final MarginLayoutParams positionParams = (MarginLayoutParams) mPosition.getLayoutParams();
+        place(mPosition, width, width - getPaddingRight() - positionParams.rightMargin
+                - mPosition.getMeasuredWidth(), top + positionParams.topMargin);
+
+        final MarginLayoutParams heartParams = (MarginLayoutParams) mHeart.getLayoutParams();
+        place(mHeart, width, width - getPaddingRight() - heartParams.rightMargin
+                - mHeart.getMeasuredWidth(), centeredTop(mHeart, top, bottom));
+
+        // the text starts level with the position
+        int textTop = top + positionParams.topMargin;
+        for (View text : new View[]{mTitle, mYear, mType}) {
+            final MarginLayoutParams params = (MarginLayoutParams) text.getLayoutParams();
+            textTop += params.topMargin;
+            place(text, width, textStart(), textTop);
+            textTop += text.getMeasuredHeight() + params.bottomMargin;
+        }
+    }
+
+    /**
+     * Lay out a child at a position given for a left-to-right layout, mirrored in right-to-left
+     * layouts.
+     */
+    private void place(View child, int width, int left, int top) {
+        final int childWidth = child.getMeasuredWidth();
+        final int start = ViewCompat.getLayoutDirection(this) == ViewCompat.LAYOUT_DIRECTION_RTL
+                ? width - left - childWidth
+                : left;
+        child.layout(start, top, start + childWidth, top + child.getMeasuredHeight());
+    }
+
+    private int textStart() {
+        final MarginLayoutParams params = (MarginLayoutParams) mPoster.getLayoutParams();
+        return getPaddingLeft() + params.leftMargin + params.width + params.rightMargin;
+    }
+
+    private int textEnd(int width) {
+        final MarginLayoutParams params = (MarginLayoutParams) mHeart.getLayoutParams();
+        return Math.max(textStart(), width - getPaddingRight() - params.rightMargin
+                - mHeart.getMeasuredWidth() - params.leftMargin);
+    }
+
+    private static int verticalSpace(View child) {
+        final MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+        return params.topMargin + child.getMeasuredHeight() + params.bottomMargin;
+    }
+
+    private static int centeredTop(View child, int top, int bottom) {
+        final MarginLayoutParams params = (MarginLayoutParams) child.getLayoutParams();
+        return top + (bottom - top - verticalSpace(child)) / 2 + params.topMargin;
+    }
+
+    @Override
+    public LayoutParams generateLayoutParams(AttributeSet attrs) {
+        return new MarginLayoutParams(getContext(), attrs);
+    }
+
+    @Override
+    protected LayoutParams generateDefaultLayoutParams() {
+        return new MarginLayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+    }
+
+    @Override
+    protected LayoutParams generateLayoutParams(LayoutParams p) {
+        return new MarginLayoutParams(p);
+    }
+
+    @Override
+    protected boolean checkLayoutParams(LayoutParams p) {
+        return p instanceof MarginLayoutParams;
+    }
+}
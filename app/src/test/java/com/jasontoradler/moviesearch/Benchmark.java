@@ -0,0 +1,60 @@
+package com.jasontoradler.moviesearch;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * JUnit category of the benchmarks. They are left out of the unit test run and only run, alone,
+ * with {@code ./gradlew testDebugUnitTest -Pbenchmark}; they report their numbers on the standard
+ * output instead of asserting them, since timings vary too much between machines.
+ */
+public interface Benchmark {
+
+    /**
+     * A piece of work to be timed.
+     */
+    interface Operation {
+        void run() throws Exception;
+    }
+
+    final class Timer {
+        /**
+         * Rounds timed after as many rounds to warm up. The operations compared take turns within
+         * each round, so that they suffer alike from whatever else the machine is doing, and the
+         * fastest round of each is reported, being the least disturbed by garbage collection.
+         */
+        private static final int ROUNDS = 10;
+
+        private Timer() {
+        }
+
+        /**
+         * @return microseconds taken by one run of each operation, in its fastest round
+         */
+        public static double[] microsPerRun(int runsPerRound, Operation... operations)
+                throws Exception {
+            final long[] fastest = new long[operations.length];
+            Arrays.fill(fastest, Long.MAX_VALUE);
+            for (int round = 0; round < 2 * ROUNDS; round++) {
+                for (int op = 0; op < operations.length; op++) {
+                    final long start = System.nanoTime();
+                    for (int i = 0; i < runsPerRound; i++) {
+                        operations[op].run();
+                    }
+                    if (round >= ROUNDS) {
+                        fastest[op] = Math.min(fastest[op], System.nanoTime() - start);
+                    }
+                }
+            }
+            final double[] micros = new double[operations.length];
+            for (int op = 0; op < operations.length; op++) {
+                micros[op] = fastest[op] / 1000.0 / runsPerRound;
+            }
+            return micros;
+        }
+
+        public static void report(String format, Object... args) {
+            System.out.println(String.format(Locale.US, format, args));
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.jasontoradler.moviesearch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Sample OMDb responses kept in the test resources.
+ */
+public final class Fixtures {
+
+    public static final String SEARCH_RESULTS = "search_results.json";
+    public static final String MOVIE_DETAILS = "movie_details.json";
+    /**
+     * Details of a running series with most values "N/A" and no ratings.
+     */
+    public static final String SERIES_DETAILS = "series_details.json";
+    public static final String ERROR = "error.json";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private Fixtures() {
+    }
+
+    public static byte[] readBytes(String name) throws IOException {
+        final InputStream in = Fixtures.class.getClassLoader().getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("missing test resource " + name);
+        }
+        return readFully(in);
+    }
+
+    public static String readString(String name) throws IOException {
+        return new String(readBytes(name), UTF_8);
+    }
+
+    /**
+     * Read a file of the module, such as one of the app's resources; unit tests run in the module
+     * directory.
+     */
+    public static byte[] readFile(File file) throws IOException {
+        return readFully(new FileInputStream(file));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.jasontoradler.moviesearch.data;
+
+import com.jasontoradler.moviesearch.Benchmark;
+import com.jasontoradler.moviesearch.Fixtures;
+import com.jasontoradler.moviesearch.network.OmdbParser;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Time to read a cached response as the records OmdbCodec encodes compared with parsing the JSON
+ * it came from, which the response cache held before.
+ */
+@Category(Benchmark.class)
+public class OmdbCodecBenchmark {
+
+    private static final int RUNS = 2000;
+
+    @Test
+    public void searchResults() throws Exception {
+        final byte[] json = Fixtures.readBytes(Fixtures.SEARCH_RESULTS);
+        final byte[] encoded = OmdbCodec.encodeSearchResults(OmdbParser.parseSearchResults(json));
+
+        report(Fixtures.SEARCH_RESULTS, json, encoded, Benchmark.Timer.microsPerRun(RUNS,
+                new Benchmark.Operation() {
+                    @Override
+                    public void run() throws Exception {
+                        OmdbCodec.decodeSearchResults(ByteBuffer.wrap(encoded));
+                    }
+                },
+                new Benchmark.Operation() {
+                    @Override
+                    public void run() throws Exception {
+                        OmdbParser.parseSearchResults(json);
+                    }
+                }));
+    }
+
+    @Test
+    public void movieDetails() throws Exception {
+        for (String fixture : new String[]{Fixtures.MOVIE_DETAILS, Fixtures.SERIES_DETAILS}) {
+            final byte[] json = Fixtures.readBytes(fixture);
+            final byte[] encoded = OmdbCodec.encodeMovieDetails(OmdbParser.parseMovieDetails(json));
+
+            report(fixture, json, encoded, Benchmark.Timer.microsPerRun(RUNS,
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() throws Exception {
+                            OmdbCodec.decodeMovieDetails(ByteBuffer.wrap(encoded));
+                        }
+                    },
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() throws Exception {
+                            OmdbParser.parseMovieDetails(json);
+                        }
+                    }));
+        }
+    }
+
+    private static void report(String fixture, byte[] json, byte[] encoded, double[] micros) {
+        Benchmark.Timer.report("%s: decode %d bytes %.1f us, parse %d bytes of JSON %.1f us",
+                fixture, encoded.length, micros[0], json.length, micros[1]);
+    }
+}
@@ -0,0 +1,277 @@
+package com.jasontoradler.moviesearch.data;
+
+import com.jasontoradler.moviesearch.Fixtures;
+import com.jasontoradler.moviesearch.network.OmdbParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OmdbCodecTest {
+
+    @Test
+    public void searchResults_roundTrip() throws IOException {
+        final SearchResults expected =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS));
+
+        assertSearchResultsEqual(expected, roundTrip(expected));
+    }
+
+    @Test
+    public void searchResults_nullFields() throws IOException {
+        final SearchItem item = new SearchItem();
+        item.Title = "Red Dragon";
+        final SearchResults expected = new SearchResults();
+        expected.Search = Arrays.asList(item, new SearchItem());
+
+        final SearchResults actual = roundTrip(expected);
+
+        assertSearchResultsEqual(expected, actual);
+        assertNull(actual.Response);
+        assertNull(actual.Error);
+        assertNull(roundTrip(new SearchResults()).Search);
+    }
+
+    @Test
+    public void searchResults_errorResponse() throws IOException {
+        final SearchResults expected =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.ERROR));
+
+        final SearchResults actual = roundTrip(expected);
+
+        assertSearchResultsEqual(expected, actual);
+        assertEquals("Movie not found!", actual.Error);
+        assertNull(actual.Search);
+    }
+
+    @Test
+    public void searchItems_roundTrip() throws IOException {
+        final List<SearchItem> expected =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS)).Search;
+
+        assertItemsEqual(expected, OmdbCodec.decodeSearchItems(
+                ByteBuffer.wrap(OmdbCodec.encodeSearchItems(expected))));
+        assertTrue(OmdbCodec.decodeSearchItems(ByteBuffer.wrap(
+                OmdbCodec.encodeSearchItems(Collections.<SearchItem>emptyList()))).isEmpty());
+    }
+
+    @Test
+    public void movieDetails_roundTrip() throws IOException {
+        final MovieDetails expected =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS));
+
+        final MovieDetails actual = roundTrip(expected);
+
+        assertDetailsEqual(expected, actual);
+        assertEquals(3, actual.ratings.size());
+        assertEquals(7.2f, actual.imdbRating, 0);
+        assertEquals(211530, actual.imdbVotes);
+    }
+
+    @Test
+    public void movieDetails_notAvailableValues() throws IOException {
+        final MovieDetails expected =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.SERIES_DETAILS));
+
+        final MovieDetails actual = roundTrip(expected);
+
+        assertDetailsEqual(expected, actual);
+        assertEquals(2011, actual.startYear);
+        assertEquals(MovieDetails.UNKNOWN, actual.endYear);
+        assertTrue(Float.isNaN(actual.imdbRating));
+        assertEquals("N/A", actual.poster);
+        assertEquals("N/A", actual.getField("Runtime"));
+    }
+
+    @Test
+    public void movieDetails_nullValues() throws IOException {
+        final MovieDetails expected = new MovieDetails();
+        expected.ratings.add(new MovieDetails.Rating("Metacritic", null));
+        expected.ratings.add(new MovieDetails.Rating(null, "87%"));
+        expected.ratings.add(new MovieDetails.Rating(null, null));
+
+        final MovieDetails actual = roundTrip(expected);
+
+        assertDetailsEqual(expected, actual);
+        assertNull(actual.response);
+        assertNull(actual.title);
+        assertNull(actual.poster);
+        assertEquals(0, actual.getFieldCount());
+    }
+
+    @Test
+    public void movieDetails_extremeNumbers() throws IOException {
+        final MovieDetails expected = new MovieDetails();
+        expected.startYear = 0;
+        expected.endYear = Integer.MAX_VALUE;
+        expected.runtimeMinutes = Integer.MIN_VALUE;
+        expected.imdbVotes = -2;
+        expected.imdbRating = 0;
+
+        assertDetailsEqual(expected, roundTrip(expected));
+    }
+
+    @Test
+    public void decode_directBufferAndTrailingData() throws IOException {
+        final MovieDetails expected =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS));
+        final byte[] encoded = OmdbCodec.encodeMovieDetails(expected);
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(3 + encoded.length + 4);
+        buffer.put(new byte[3]).put(encoded).putInt(42);
+        buffer.position(3);
+
+        assertDetailsEqual(expected, OmdbCodec.decodeMovieDetails(buffer));
+        assertEquals(42, buffer.getInt());
+    }
+
+    @Test
+    public void decode_arrayBufferAtOffset() throws IOException {
+        final List<SearchItem> expected =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS)).Search;
+        final byte[] encoded = OmdbCodec.encodeSearchItems(expected);
+        final byte[] padded = new byte[5 + encoded.length];
+        System.arraycopy(encoded, 0, padded, 5, encoded.length);
+        final ByteBuffer buffer = ByteBuffer.wrap(padded);
+        buffer.position(5);
+
+        assertItemsEqual(expected, OmdbCodec.decodeSearchItems(buffer.slice()));
+    }
+
+    @Test
+    public void decode_rejectsOtherData() throws IOException {
+        assertRejected(Fixtures.readBytes(Fixtures.SEARCH_RESULTS));
+        assertRejected(new byte[0]);
+        final byte[] details = OmdbCodec.encodeMovieDetails(
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS)));
+        // another kind of record
+        try {
+            OmdbCodec.decodeSearchResults(ByteBuffer.wrap(details));
+            fail("decoded details as search results");
+        } catch (IOException expected) {
+            // expected
+        }
+        // another version
+        final byte[] otherVersion = details.clone();
+        otherVersion[4]++;
+        assertRejected(otherVersion);
+    }
+
+    @Test
+    public void decode_rejectsEveryTruncation() throws IOException {
+        final byte[] results = OmdbCodec.encodeSearchResults(
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS)));
+        final byte[] details = OmdbCodec.encodeMovieDetails(
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS)));
+        for (int length = 0; length < results.length; length++) {
+            try {
+                OmdbCodec.decodeSearchResults(ByteBuffer.wrap(results, 0, length));
+                fail("decoded search results truncated to " + length + " bytes");
+            } catch (IOException expected) {
+                // expected
+            }
+        }
+        for (int length = 0; length < details.length; length++) {
+            assertRejected(Arrays.copyOf(details, length));
+        }
+    }
+
+    /**
+     * The point of the codec: records must be smaller than the JSON they came from.
+     */
+    @Test
+    public void encoded_smallerThanJson() throws IOException {
+        for (String fixture : new String[]{Fixtures.MOVIE_DETAILS, Fixtures.SERIES_DETAILS}) {
+            final byte[] json = Fixtures.readBytes(fixture);
+            final byte[] encoded =
+                    OmdbCodec.encodeMovieDetails(OmdbParser.parseMovieDetails(json));
+
+            assertTrue(fixture + ": " + encoded.length + " of " + json.length + " bytes",
+                    encoded.length < json.length);
+        }
+        final byte[] json = Fixtures.readBytes(Fixtures.SEARCH_RESULTS);
+        final byte[] encoded = OmdbCodec.encodeSearchResults(OmdbParser.parseSearchResults(json));
+
+        assertTrue(encoded.length + " of " + json.length + " bytes", encoded.length < json.length);
+    }
+
+    private static SearchResults roundTrip(SearchResults searchResults) throws IOException {
+        return OmdbCodec.decodeSearchResults(
+                ByteBuffer.wrap(OmdbCodec.encodeSearchResults(searchResults)));
+    }
+
+    private static MovieDetails roundTrip(MovieDetails movieDetails) throws IOException {
+        return OmdbCodec.decodeMovieDetails(
+                ByteBuffer.wrap(OmdbCodec.encodeMovieDetails(movieDetails)));
+    }
+
+    private static void assertRejected(byte[] details) {
+        try {
+            OmdbCodec.decodeMovieDetails(ByteBuffer.wrap(details));
+            fail("decoded " + details.length + " bytes of invalid details");
+        } catch (IOException expected) {
+            // expected
+        }
+    }
+
+    private static void assertSearchResultsEqual(SearchResults expected, SearchResults actual) {
+        assertEquals(expected.Response, actual.Response);
+        assertEquals(expected.Error, actual.Error);
+        assertEquals(expected.totalResults, actual.totalResults);
+        if (expected.Search == null) {
+            assertNull(actual.Search);
+        } else {
+            assertItemsEqual(expected.Search, actual.Search);
+        }
+    }
+
+    private static void assertItemsEqual(List<SearchItem> expected, List<SearchItem> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(itemText(expected.get(i)), itemText(actual.get(i)));
+            assertFalse(actual.get(i).isFavorite);
+        }
+    }
+
+    private static List<String> itemText(SearchItem item) {
+        return Arrays.asList(item.Title, item.Year, item.imdbID, item.Type, item.Poster);
+    }
+
+    private static void assertDetailsEqual(MovieDetails expected, MovieDetails actual) {
+        assertEquals(expected.response, actual.response);
+        assertEquals(expected.poster, actual.poster);
+        assertEquals(expected.title, actual.title);
+        assertEquals(expected.startYear, actual.startYear);
+        assertEquals(expected.endYear, actual.endYear);
+        assertEquals(expected.runtimeMinutes, actual.runtimeMinutes);
+        assertEquals(expected.metascore, actual.metascore);
+        assertEquals(Float.floatToIntBits(expected.imdbRating),
+                Float.floatToIntBits(actual.imdbRating));
+        assertEquals(expected.imdbVotes, actual.imdbVotes);
+        assertEquals(fieldText(expected), fieldText(actual));
+        assertEquals(expected.ratings.size(), actual.ratings.size());
+        for (int i = 0; i < expected.ratings.size(); i++) {
+            assertEquals(expected.ratings.get(i).source, actual.ratings.get(i).source);
+            assertEquals(expected.ratings.get(i).value, actual.ratings.get(i).value);
+        }
+    }
+
+    private static List<String> fieldText(MovieDetails movieDetails) {
+        final List<String> text = new ArrayList<>();
+        for (int i = 0; i < movieDetails.getFieldCount(); i++) {
+            text.add(movieDetails.getFieldName(i));
+            text.add(movieDetails.getFieldValue(i));
+        }
+        return text;
+    }
+}
@@ -0,0 +1,257 @@
+package com.jasontoradler.moviesearch.data;
+
+import android.support.v7.util.ListUpdateCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static com.jasontoradler.moviesearch.data.SearchItemStoreTest.item;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResultsViewTest {
+
+    private static final ResultsQuery[] QUERIES = {
+            ResultsQuery.ALL,
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.TITLE),
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_NEWEST),
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_OLDEST),
+            ResultsQuery.ALL.withType(SearchItemStore.Type.SERIES),
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.TITLE).withYears(1990, 2005),
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_NEWEST)
+                    .withType(SearchItemStore.Type.MOVIE).withYears(ResultsQuery.ANY_YEAR, 1999),
+            ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_OLDEST).withYears(2010, 2010),
+    };
+
+    private static final String[] TITLES = {"alien", "Alien", "Brazil", "casino", "Drive"};
+    private static final String[] TYPES = {"movie", "series", "episode"};
+
+    private final ResultsModel mModel = new ResultsModel();
+
+    @Test
+    public void of_relevanceKeepsOmdbOrder() {
+        final ResultsModel.Snapshot snapshot = mModel.replace(Arrays.asList(
+                item("b", "2001", "tt0000001", "movie", null),
+                item("a", "2000", "tt0000002", "movie", null),
+                item("c", "1999", "tt0000003", "movie", null)));
+
+        assertOrder(ResultsView.of(snapshot, ResultsQuery.ALL), 0, 1, 2);
+    }
+
+    @Test
+    public void of_sortsByTitleIgnoringCaseThenOmdbOrder() {
+        final ResultsModel.Snapshot snapshot = mModel.replace(Arrays.asList(
+                item("brazil", "1985", "tt0000001", "movie", null),
+                item("Alien", "1979", "tt0000002", "movie", null),
+                item(null, "1979", "tt0000003", "movie", null),
+                item("alien", "1979", "tt0000004", "movie", null),
+                item("Brazil", "1985", "tt0000005", "movie", null)));
+
+        assertOrder(ResultsView.of(snapshot, ResultsQuery.ALL.withSort(ResultsQuery.Sort.TITLE)),
+                2, 1, 3, 0, 4);
+    }
+
+    @Test
+    public void of_sortsByYearWithUnknownYearsLast() {
+        final ResultsModel.Snapshot snapshot = mModel.replace(Arrays.asList(
+                item("a", "N/A", "tt0000001", "movie", null),
+                item("b", "1999", "tt0000002", "movie", null),
+                item("c", "2010\u2013", "tt0000003", "series", null),
+                item("d", "1999", "tt0000004", "movie", null),
+                item("e", "2005\u20132012", "tt0000005", "series", null),
+                item("f", null, "tt0000006", "movie", null)));
+
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_NEWEST)), 2, 4, 1, 3, 0, 5);
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withSort(ResultsQuery.Sort.YEAR_OLDEST)), 1, 3, 4, 2, 0, 5);
+    }
+
+    @Test
+    public void of_filtersByType() {
+        final ResultsModel.Snapshot snapshot = mModel.replace(Arrays.asList(
+                item("a", "2001", "tt0000001", "movie", null),
+                item("b", "2001", "tt0000002", "series", null),
+                item("c", "2001", "tt0000003", "game", null),
+                item("d", "2001", "tt0000004", "series", null)));
+
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withType(SearchItemStore.Type.SERIES)), 1, 3);
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withType(SearchItemStore.Type.EPISODE)));
+    }
+
+    @Test
+    public void of_filtersByYearsAnyOfWhichFallInRange() {
+        final ResultsModel.Snapshot snapshot = mModel.replace(Arrays.asList(
+                item("before", "1995", "tt0000001", "movie", null),
+                item("first", "2000", "tt0000002", "movie", null),
+                item("overlapping", "1990\u20132001", "tt0000003", "series", null),
+                item("running", "1980\u2013", "tt0000004", "series", null),
+                item("last", "2005", "tt0000005", "movie", null),
+                item("after", "2006", "tt0000006", "movie", null),
+                item("unknown", "N/A", "tt0000007", "movie", null)));
+
+        assertOrder(ResultsView.of(snapshot, ResultsQuery.ALL.withYears(2000, 2005)),
+                1, 2, 3, 4);
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withYears(2006, ResultsQuery.ANY_YEAR)), 3, 5);
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withYears(ResultsQuery.ANY_YEAR, 1990)), 2, 3);
+        assertOrder(ResultsView.of(snapshot,
+                ResultsQuery.ALL.withYears(ResultsQuery.ANY_YEAR, ResultsQuery.ANY_YEAR)),
+                0, 1, 2, 3, 4, 5, 6);
+    }
+
+    @Test
+    public void append_matchesRebuildAndReportsInsertions() {
+        final Random random = new Random(42);
+        for (ResultsQuery query : QUERIES) {
+            // results whose year cannot be packed only come in the first page; see
+            // SearchItemStoreTest
+            ResultsModel.Snapshot snapshot = mModel.replace(randomItems(random, 10, true));
+            ResultsView view = ResultsView.of(snapshot, query);
+            for (int page = 0; page < 20; page++) {
+                snapshot = mModel.append(snapshot.getGeneration(),
+                        randomItems(random, random.nextInt(11), false));
+                assertTrue(view.canAppend(snapshot));
+
+                final List<Integer> shown = new ArrayList<>();
+                for (int i = 0; i < view.size(); i++) {
+                    shown.add(view.getPosition(i));
+                }
+                final int oldSize = view.getSnapshot().size();
+                view = view.append(snapshot, new Inserter(shown));
+
+                final ResultsView rebuilt = ResultsView.of(snapshot, query);
+                assertArrayEquals(query.toString(), order(rebuilt), order(view));
+                assertEquals(query.toString(), view.size(), shown.size());
+                for (int i = 0; i < shown.size(); i++) {
+                    if (shown.get(i) == null) {
+                        assertTrue(query.toString(), view.getPosition(i) >= oldSize);
+                    } else {
+                        assertEquals(query.toString(), (int) shown.get(i), view.getPosition(i));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void append_ofNothingAcceptedReportsNothing() {
+        ResultsModel.Snapshot snapshot = mModel.replace(Collections.singletonList(
+                item("a", "2001", "tt0000001", "movie", null)));
+        final ResultsView view = ResultsView.of(snapshot,
+                ResultsQuery.ALL.withType(SearchItemStore.Type.MOVIE));
+        snapshot = mModel.append(snapshot.getGeneration(), Collections.singletonList(
+                item("b", "2001", "tt0000002", "series", null)));
+
+        final ResultsView appended = view.append(snapshot, new Inserter(null));
+
+        assertOrder(appended, 0);
+        assertSame(snapshot, appended.getSnapshot());
+    }
+
+    @Test
+    public void append_rejectsOtherGeneration() {
+        final ResultsView view = ResultsView.of(mModel.replace(Collections.singletonList(
+                item("a", "2001", "tt0000001", "movie", null))), ResultsQuery.ALL);
+        final ResultsModel.Snapshot replaced = mModel.replace(Collections.singletonList(
+                item("b", "2001", "tt0000002", "movie", null)));
+
+        assertFalse(view.canAppend(replaced));
+        try {
+            view.append(replaced, new Inserter(null));
+            fail("appended a replaced generation");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    private static List<SearchItem> randomItems(Random random, int count,
+            boolean withUnknownYears) {
+        final List<SearchItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final int start = 1985 + random.nextInt(30);
+            final String year;
+            switch (random.nextInt(withUnknownYears ? 5 : 4)) {
+                case 0:
+                    year = start + "\u2013";
+                    break;
+                case 1:
+                    year = start + "\u2013" + (start + random.nextInt(5));
+                    break;
+                case 4:
+                    year = "N/A";
+                    break;
+                default:
+                    year = String.valueOf(start);
+                    break;
+            }
+            items.add(item(TITLES[random.nextInt(TITLES.length)], year,
+                    "tt" + (1000000 + random.nextInt(1000000)),
+                    TYPES[random.nextInt(TYPES.length)], null));
+        }
+        return items;
+    }
+
+    private static int[] order(ResultsView view) {
+        final int[] order = new int[view.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = view.getPosition(i);
+        }
+        return order;
+    }
+
+    private static void assertOrder(ResultsView view, int... positions) {
+        assertArrayEquals(positions, order(view));
+    }
+
+    /**
+     * Applies the reported insertions to a list of the shown positions the way an adapter would,
+     * inserting nulls for the new results; ranges must come in ascending order.
+     */
+    private static final class Inserter implements ListUpdateCallback {
+        private final List<Integer> mShown;
+        private int mLastEnd;
+
+        Inserter(List<Integer> shown) {
+            mShown = shown;
+        }
+
+        @Override
+        public void onInserted(int position, int count) {
+            if (mShown == null) {
+                fail("unexpected insertion at " + position);
+            }
+            assertTrue(count > 0);
+            assertTrue(position >= mLastEnd);
+            mShown.addAll(position, Collections.<Integer>nCopies(count, null));
+            mLastEnd = position + count;
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            fail("unexpected removal");
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            fail("unexpected move");
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            fail("unexpected change");
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.jasontoradler.moviesearch.data;
+
+import com.jasontoradler.moviesearch.Benchmark;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Heap held by, and time to bind every row of, a large result set in a SearchItemStore compared
+ * with the List of SearchItems it replaced.
+ */
+@Category(Benchmark.class)
+public class SearchItemStoreBenchmark {
+
+    private static final int[] SIZES = {5000, 20000};
+    private static final String[] WORDS = {
+            "Red", "Dragon", "Silence", "Lambs", "Hannibal", "Rising", "Manhunter", "Night",
+            "Return", "Empire", "Last", "Crusade", "Lost", "Ark", "Temple", "Doom",
+    };
+
+    /**
+     * Sum of the lengths of the bound texts, so that the reads cannot be optimized away.
+     */
+    private long mBound;
+
+    @Test
+    public void heap() throws Exception {
+        for (int size : SIZES) {
+            // the first pass loads classes and leaves garbage that takes a while to be freed
+            measureHeap(size);
+            final long[] bytes = measureHeap(size);
+
+            Benchmark.Timer.report("%d results: List<SearchItem> %d KB, SearchItemStore %d KB",
+                    size, bytes[0] / 1024, bytes[1] / 1024);
+        }
+    }
+
+    /**
+     * @return bytes held by the items in a List and in a SearchItemStore
+     */
+    private static long[] measureHeap(int size) throws InterruptedException {
+        final long before = usedHeap();
+        List<SearchItem> list = items(size);
+        final long listBytes = usedHeap() - before;
+
+        final SearchItemStore store = new SearchItemStore();
+        store.append(list);
+        list = null;
+        final long storeBytes = usedHeap() - before;
+        // also keeps the store reachable until it has been measured
+        if (store.size() != size) {
+            throw new AssertionError();
+        }
+        return new long[]{listBytes, storeBytes};
+    }
+
+    @Test
+    public void bind() throws Exception {
+        for (int size : SIZES) {
+            final List<SearchItem> list = items(size);
+            final SearchItemStore store = new SearchItemStore();
+            store.append(list);
+
+            final double[] micros = Benchmark.Timer.microsPerRun(20,
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < list.size(); i++) {
+                                final SearchItem item = list.get(i);
+                                bind(item.Title, item.Year, item.Type, item.Poster);
+                            }
+                        }
+                    },
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() {
+                            for (int i = 0; i < store.size(); i++) {
+                                bind(store.getTitle(i), store.getYear(i), store.getTypeText(i),
+                                        store.getPoster(i));
+                            }
+                        }
+                    });
+
+            Benchmark.Timer.report("%d results: bind List<SearchItem> %.3f us, "
+                            + "SearchItemStore %.3f us per row",
+                    size, micros[0] / size, micros[1] / size);
+        }
+    }
+
+    private void bind(String title, String year, String type, String poster) {
+        mBound += title.length() + year.length() + type.length() + poster.length();
+    }
+
+    /**
+     * @return results as the parser creates them, with every string a separate object
+     */
+    private static List<SearchItem> items(int count) {
+        final Random random = new Random(count);
+        final List<SearchItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final SearchItem item = new SearchItem();
+            final StringBuilder title = new StringBuilder();
+            for (int words = 1 + random.nextInt(4); words > 0; words--) {
+                title.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            item.Title = title.append(i).toString();
+            final int year = 1950 + random.nextInt(70);
+            item.Year = random.nextInt(5) == 0
+                    ? year + "\u2013" + (year + random.nextInt(10))
+                    : String.valueOf(year);
+            item.imdbID = "tt" + (100000 + random.nextInt(9000000));
+            item.Type = new String(random.nextInt(5) == 0 ? "series" : "movie");
+            final StringBuilder poster =
+                    new StringBuilder("https://m.media-amazon.com/images/M/MV5B");
+            for (int c = 0; c < 40; c++) {
+                poster.append((char) ('A' + random.nextInt(26)));
+            }
+            item.Poster = poster.append("._V1_SX300.jpg").toString();
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * @return heap in use once garbage collection no longer frees any of it
+     */
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        long previous;
+        do {
+            previous = used;
+            System.gc();
+            Thread.sleep(50);
+            used = runtime.totalMemory() - runtime.freeMemory();
+        } while (used < previous);
+        return used;
+    }
+}
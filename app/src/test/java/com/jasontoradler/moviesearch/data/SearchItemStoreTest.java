@@ -0,0 +1,191 @@
+package com.jasontoradler.moviesearch.data;
+
+import com.jasontoradler.moviesearch.Fixtures;
+import com.jasontoradler.moviesearch.network.OmdbParser;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The values a store cannot pack are kept in SparseArrays, which are inert stubs in JVM tests, so
+ * for those only the packed columns are checked here.
+ */
+public class SearchItemStoreTest {
+
+    @Test
+    public void append_readsBackEveryPackedValue() throws IOException {
+        final List<SearchItem> items =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS)).Search;
+        final SearchItemStore store = new SearchItemStore();
+
+        store.append(items);
+
+        assertEquals(items.size(), store.size());
+        for (int i = 0; i < items.size(); i++) {
+            assertItemEquals(items.get(i), store.get(i));
+        }
+        assertNull(store.get(-1));
+        assertNull(store.get(items.size()));
+    }
+
+    @Test
+    public void append_packsImdbIdsWithLeadingZeros() {
+        final SearchItemStore store = new SearchItemStore();
+
+        store.append(Arrays.asList(
+                item("a", "2002", "tt0000001", "movie", null),
+                item("b", "2002", "tt123456789", "movie", null),
+                item("c", "2002", "tt10", "movie", null)));
+
+        assertEquals("tt0000001", store.getImdbId(0));
+        assertEquals("tt123456789", store.getImdbId(1));
+        assertEquals("tt10", store.getImdbId(2));
+    }
+
+    @Test
+    public void append_packsPosterAffixes() {
+        final String[] posters = {
+                "https://images-na.ssl-images-amazon.com/images/M/abc._V1_SX300.jpg",
+                "https://m.media-amazon.com/images/M/abc._V1_SX300.jpg",
+                "https://m.media-amazon.com/images/M/abc.jpg",
+                "https://example.com/abc._V1_SX300.jpg",
+                "N/A",
+                null,
+        };
+        final SearchItemStore store = new SearchItemStore();
+        for (String poster : posters) {
+            store.append(Collections.singletonList(
+                    item("a", "2002", "tt0289765", "movie", poster)));
+        }
+
+        for (int i = 0; i < posters.length; i++) {
+            assertEquals(posters[i], store.getPoster(i));
+        }
+    }
+
+    @Test
+    public void years() {
+        final SearchItemStore store = new SearchItemStore();
+
+        store.append(Arrays.asList(
+                item("single", "2002", "tt0000001", "movie", null),
+                item("finished", "2011\u20132014", "tt0000002", "series", null),
+                item("running", "2012\u2013", "tt0000003", "series", null),
+                item("unknown", "N/A", "tt0000004", "series", null),
+                item("missing", null, "tt0000005", "series", null)));
+
+        assertYears(store, 0, "2002", 2002, 2002);
+        assertYears(store, 1, "2011\u20132014", 2011, 2014);
+        assertYears(store, 2, "2012\u2013", 2012, -1);
+        assertEquals(-1, store.getStartYear(3));
+        assertEquals(-1, store.getEndYear(3));
+        assertEquals(-1, store.getStartYear(4));
+        assertEquals(-1, store.getEndYear(4));
+    }
+
+    @Test
+    public void types() {
+        final SearchItemStore store = new SearchItemStore();
+
+        store.append(Arrays.asList(
+                item("a", "2002", "tt0000001", "movie", null),
+                item("b", "2002", "tt0000002", "series", null),
+                item("c", "2002", "tt0000003", "episode", null),
+                item("d", "2002", "tt0000004", "game", null),
+                item("e", "2002", "tt0000005", "Movie", null),
+                item("f", "2002", "tt0000006", null, null)));
+
+        assertEquals(SearchItemStore.Type.MOVIE, store.getType(0));
+        assertEquals("movie", store.getTypeText(0));
+        assertEquals(SearchItemStore.Type.SERIES, store.getType(1));
+        assertEquals(SearchItemStore.Type.EPISODE, store.getType(2));
+        assertEquals("game", store.getTypeText(3));
+        assertEquals(SearchItemStore.Type.OTHER, store.getType(4));
+        assertEquals(SearchItemStore.Type.OTHER, store.getType(5));
+    }
+
+    @Test
+    public void snapshot_isNotChangedByLaterAppends() {
+        final SearchItemStore store = new SearchItemStore(2);
+        final List<SearchItem> first = Arrays.asList(
+                item("Red Dragon", "2002", "tt0289765", "movie", null),
+                item("The Red Dragon", "1965", "tt0059635", "movie", null));
+        store.append(first);
+        final SearchItemStore snapshot = store.snapshot();
+
+        // grows every column and the string pool past their initial capacity
+        for (int i = 0; i < 100; i++) {
+            store.append(Collections.singletonList(
+                    item("Title " + i, "1990", "tt" + (1000000 + i), "series", "poster " + i)));
+        }
+
+        assertEquals(2, snapshot.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertItemEquals(first.get(i), snapshot.get(i));
+        }
+        assertNull(snapshot.get(2));
+        assertEquals(102, store.size());
+        assertEquals("Title 99", store.snapshot().getTitle(101));
+        assertEquals("Red Dragon", store.snapshot().getTitle(0));
+    }
+
+    @Test
+    public void snapshot_ofSnapshotIsItself() {
+        final SearchItemStore snapshot = new SearchItemStore().snapshot();
+
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void snapshot_isReadOnly() {
+        new SearchItemStore().snapshot().append(
+                Collections.singletonList(item("a", "2002", "tt0000001", "movie", null)));
+    }
+
+    @Test
+    public void asList_materializesItems() {
+        final SearchItemStore store = new SearchItemStore();
+        store.append(Arrays.asList(
+                item("a", "2002", "tt0000001", "movie", null),
+                item("b", "2003", "tt0000002", "series", null)));
+
+        final List<SearchItem> list = store.asList();
+
+        assertEquals(2, list.size());
+        assertEquals("b", list.get(1).Title);
+        assertEquals("2003", list.get(1).Year);
+    }
+
+    static SearchItem item(String title, String year, String imdbId, String type, String poster) {
+        final SearchItem item = new SearchItem();
+        item.Title = title;
+        item.Year = year;
+        item.imdbID = imdbId;
+        item.Type = type;
+        item.Poster = poster;
+        return item;
+    }
+
+    private static void assertItemEquals(SearchItem expected, SearchItem actual) {
+        assertEquals(expected.Title, actual.Title);
+        assertEquals(expected.Year, actual.Year);
+        assertEquals(expected.imdbID, actual.imdbID);
+        assertEquals(expected.Type, actual.Type);
+        assertEquals(expected.Poster, actual.Poster);
+    }
+
+    private static void assertYears(SearchItemStore store, int position, String year, int start,
+            int end) {
+        assertEquals(year, store.getYear(position));
+        assertEquals(start, store.getStartYear(position));
+        assertEquals(end, store.getEndYear(position));
+    }
+}
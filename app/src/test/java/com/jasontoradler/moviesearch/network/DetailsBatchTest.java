@@ -0,0 +1,206 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.VolleyError;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DetailsBatchTest {
+
+    private final FakeLoader mLoader = new FakeLoader();
+    private final RecordingListener mListener = new RecordingListener();
+
+    @Test
+    public void memoryHitsFirst() {
+        final MovieDetails cached = details("tt2");
+        mLoader.mCached.put("tt2", cached);
+
+        final DetailsBatch batch = start("tt1", "tt2", "tt3");
+
+        // the hit is delivered before any lookup is started
+        assertEquals(Arrays.asList("details tt2", "progress 1/3"),
+                mListener.mEvents.subList(0, 2));
+        assertSame(cached, mListener.mDetails.get("tt2"));
+        assertEquals(Arrays.asList("tt1", "tt3"), mLoader.inFlight());
+        assertEquals(1, batch.getDone());
+    }
+
+    @Test
+    public void boundedLookupsInFlight() {
+        final DetailsBatch batch = start("tt1", "tt2", "tt3", "tt4", "tt5", "tt1");
+
+        assertEquals(5, batch.getTotal());
+        assertEquals(Arrays.asList("tt1", "tt2"), mLoader.inFlight());
+
+        // each result makes room for the next lookup, whatever order they arrive in
+        mLoader.succeed("tt2");
+        assertEquals(Arrays.asList("tt1", "tt3"), mLoader.inFlight());
+        mLoader.fail("tt1");
+        mLoader.succeed("tt3");
+        assertEquals(Arrays.asList("tt4", "tt5"), mLoader.inFlight());
+        assertTrue(mLoader.mMaxInFlight <= SearchTool.MAX_BATCH_LOOKUPS);
+        assertEquals(5, mLoader.mStarted.size());
+        assertFalse(batch.isDone());
+    }
+
+    @Test
+    public void progressPerResult() {
+        mLoader.mCached.put("tt3", details("tt3"));
+        final DetailsBatch batch = start("tt1", "tt2", "tt3");
+
+        mLoader.succeed("tt2");
+        mLoader.fail("tt1");
+
+        assertEquals(Arrays.asList(
+                "details tt3", "progress 1/3",
+                "details tt2", "progress 2/3",
+                "error tt1", "progress 3/3",
+                "complete"), mListener.mEvents);
+        assertTrue(batch.isDone());
+        assertEquals(1, batch.getFailed());
+        assertTrue(mLoader.inFlight().isEmpty());
+    }
+
+    @Test
+    public void emptyBatchCompletes() {
+        final DetailsBatch batch = start();
+
+        assertTrue(batch.isDone());
+        assertEquals(Arrays.asList("complete"), mListener.mEvents);
+    }
+
+    @Test
+    public void cancelDetachesEveryLookup() {
+        final DetailsBatch batch = start("tt1", "tt2", "tt3", "tt4");
+        mLoader.succeed("tt1");
+
+        batch.cancel();
+
+        assertTrue(batch.isCancelled());
+        assertEquals(Arrays.<Object>asList(batch), mLoader.mCancelledOwners);
+        assertTrue(mLoader.inFlight().isEmpty());
+        // nothing more is started, and nothing more is delivered
+        assertEquals(3, mLoader.mStarted.size());
+        assertEquals(Arrays.asList("details tt1", "progress 1/4"), mListener.mEvents);
+        assertNull(mListener.mDetails.get("tt2"));
+    }
+
+    @Test
+    public void cancelFromListener() {
+        final DetailsBatch[] batch = new DetailsBatch[1];
+        mListener.mOnDetails = new Runnable() {
+            @Override
+            public void run() {
+                batch[0].cancel();
+            }
+        };
+        batch[0] = start("tt1", "tt2", "tt3");
+
+        mLoader.succeed("tt1");
+
+        assertEquals(Arrays.asList("details tt1"), mListener.mEvents);
+        assertEquals(Arrays.<Object>asList(batch[0]), mLoader.mCancelledOwners);
+        assertEquals(2, mLoader.mStarted.size());
+    }
+
+    private DetailsBatch start(String... imdbIds) {
+        final DetailsBatch batch = new DetailsBatch(Arrays.asList(imdbIds),
+                SearchTool.MAX_BATCH_LOOKUPS, mLoader, mListener);
+        batch.start();
+        return batch;
+    }
+
+    private static MovieDetails details(String imdbId) {
+        final MovieDetails movieDetails = new MovieDetails();
+        movieDetails.title = imdbId;
+        movieDetails.response = "True";
+        return movieDetails;
+    }
+
+    /**
+     * Completes the lookups only when told to, and forgets those of a cancelled owner, as the
+     * {@link RequestCoalescer} does.
+     */
+    private static final class FakeLoader implements DetailsBatch.DetailsLoader {
+        final Map<String, MovieDetails> mCached = new HashMap<>();
+        final List<String> mStarted = new ArrayList<>();
+        final List<Object> mCancelledOwners = new ArrayList<>();
+        final Map<String, RequestCoalescer.Callback<MovieDetails>> mCallbacks =
+                new LinkedHashMap<>();
+        int mMaxInFlight;
+
+        @Override
+        public MovieDetails getCached(String imdbId) {
+            return mCached.get(imdbId);
+        }
+
+        @Override
+        public void load(String imdbId, Object owner,
+                RequestCoalescer.Callback<MovieDetails> callback) {
+            mStarted.add(imdbId);
+            mCallbacks.put(imdbId, callback);
+            mMaxInFlight = Math.max(mMaxInFlight, mCallbacks.size());
+        }
+
+        @Override
+        public void cancelLoads(Object owner) {
+            mCancelledOwners.add(owner);
+            mCallbacks.clear();
+        }
+
+        List<String> inFlight() {
+            return new ArrayList<>(mCallbacks.keySet());
+        }
+
+        void succeed(String imdbId) {
+            mCallbacks.remove(imdbId).onSuccess(details(imdbId));
+        }
+
+        void fail(String imdbId) {
+            mCallbacks.remove(imdbId).onError(new VolleyError("no network"));
+        }
+    }
+
+    private static final class RecordingListener implements DetailsBatch.Listener {
+        final List<String> mEvents = new ArrayList<>();
+        final Map<String, MovieDetails> mDetails = new HashMap<>();
+        Runnable mOnDetails;
+
+        @Override
+        public void onDetails(String imdbId, MovieDetails movieDetails) {
+            mEvents.add("details " + imdbId);
+            mDetails.put(imdbId, movieDetails);
+            if (mOnDetails != null) {
+                mOnDetails.run();
+            }
+        }
+
+        @Override
+        public void onError(String imdbId, VolleyError error) {
+            mEvents.add("error " + imdbId);
+        }
+
+        @Override
+        public void onProgress(int done, int total) {
+            mEvents.add("progress " + done + "/" + total);
+        }
+
+        @Override
+        public void onComplete() {
+            mEvents.add("complete");
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.jasontoradler.moviesearch.network;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    private final Histogram mHistogram = new Histogram("test", "ms");
+
+    @Test
+    public void empty() {
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMax());
+        assertEquals(0, mHistogram.getMean(), 0);
+        assertEquals(0, mHistogram.getPercentile(50));
+        assertEquals(0, mHistogram.getPercentile(100));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (int value = 0; value < 8; value++) {
+            mHistogram.record(value);
+        }
+
+        assertEquals(0, mHistogram.getPercentile(0));
+        assertEquals(0, mHistogram.getPercentile(12.5));
+        assertEquals(3, mHistogram.getPercentile(50));
+        assertEquals(4, mHistogram.getPercentile(51));
+        assertEquals(7, mHistogram.getPercentile(100));
+        assertEquals(3.5, mHistogram.getMean(), 0);
+    }
+
+    @Test
+    public void percentilesWithinBucketPrecision() {
+        for (int value = 1; value <= 10000; value++) {
+            mHistogram.record(value);
+        }
+
+        for (double percentile : new double[]{1, 10, 25, 50, 75, 90, 95, 99, 99.9, 100}) {
+            final long expected = Math.round(percentile * 100);
+            final long actual = mHistogram.getPercentile(percentile);
+            assertTrue("p" + percentile + " = " + actual + ", expected about " + expected,
+                    Math.abs(actual - expected) <= expected / 8);
+        }
+        assertEquals(10000, mHistogram.getMax());
+        assertEquals(5000.5, mHistogram.getMean(), 0);
+    }
+
+    @Test
+    public void skewedValues() {
+        // 90% fast and 10% slow, as with cached and uncached responses
+        for (int i = 0; i < 900; i++) {
+            mHistogram.record(20);
+        }
+        for (int i = 0; i < 100; i++) {
+            mHistogram.record(3000);
+        }
+
+        assertEquals(20, mHistogram.getPercentile(50), 20 / 8);
+        assertEquals(20, mHistogram.getPercentile(90), 20 / 8);
+        assertEquals(3000, mHistogram.getPercentile(91), 3000 / 8);
+        assertEquals(3000, mHistogram.getPercentile(99), 3000 / 8);
+    }
+
+    @Test
+    public void percentileNeverExceedsMax() {
+        // in the bucket of 960 to 1023, whose midpoint is 992
+        mHistogram.record(961);
+
+        assertEquals(961, mHistogram.getPercentile(50));
+        assertEquals(961, mHistogram.getPercentile(100));
+    }
+
+    @Test
+    public void negativeValuesCountAsZero() {
+        mHistogram.record(-5);
+
+        assertEquals(1, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMax());
+        assertEquals(0, mHistogram.getPercentile(50));
+    }
+
+    @Test
+    public void bucketsCoverEveryValueInOrder() {
+        final Random random = new Random(7);
+        final int lastIndex = Histogram.bucketIndex(Long.MAX_VALUE);
+        for (int i = 0; i < 100000; i++) {
+            final long value = i < 1000 ? i : random.nextLong() >>> (1 + random.nextInt(63));
+            final int index = Histogram.bucketIndex(value);
+            assertTrue(value + " below its bucket", Histogram.bucketLowerBound(index) <= value);
+            if (index < lastIndex) {
+                assertTrue(value + " beyond its bucket",
+                        value < Histogram.bucketLowerBound(index + 1));
+            }
+        }
+        assertEquals(lastIndex, Histogram.bucketIndex(Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void reset() {
+        mHistogram.record(42);
+
+        mHistogram.reset();
+
+        assertEquals(0, mHistogram.getCount());
+        assertEquals(0, mHistogram.getMax());
+        assertEquals(0, mHistogram.getPercentile(50));
+    }
+
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int value = 1; value <= 10000; value++) {
+                        mHistogram.record(value + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(40000, mHistogram.getCount());
+        assertEquals(10003, mHistogram.getMax());
+        assertEquals(5002, mHistogram.getMean(), 0);
+    }
+
+    @Test
+    public void toStringShowsNameAndUnit() {
+        mHistogram.record(5);
+
+        assertEquals("test{count=1, mean=5ms, p50=5ms, p90=5ms, p99=5ms, max=5ms}",
+                mHistogram.toString());
+    }
+}
@@ -0,0 +1,226 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.jasontoradler.moviesearch.Fixtures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URLEncoder;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.net.ServerSocketFactory;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+
+/**
+ * Local OMDb stand-in serving the test fixtures, for driving the real requests and HTTP stack
+ * against a server whose answers and latency are known. The app can be pointed at a server like
+ * it with {@code -PomdbBaseUrl}.
+ * <ul>
+ * <li>A title search returns the search results fixture for pages 1 to {@link #PAGE_COUNT} and
+ * OMDb's "Movie not found!" error beyond them, or for the keyword {@link #NO_MATCH}.</li>
+ * <li>A search by id returns the movie or series details fixture for their imdbIDs, and the
+ * error for any other.</li>
+ * <li>The keyword {@link #SERVER_ERROR} gets an HTTP 500.</li>
+ * </ul>
+ */
+final class OmdbMockServer {
+
+    /**
+     * Pages of 10 results that the totalResults of the search results fixture make up.
+     */
+    static final int PAGE_COUNT = 6;
+    static final String NO_MATCH = "no such title";
+    static final String SERVER_ERROR = "server error";
+    static final String MOVIE_ID = "tt0289765";
+    static final String SERIES_ID = "tt1957892";
+
+    /**
+     * Unit tests run in the module directory.
+     */
+    private static final File STRINGS = new File("src/main/res/values/strings.xml");
+    /**
+     * Held so that the level set on it sticks; MockWebServer otherwise logs every request, which
+     * costs the benchmarks more than some of the requests themselves.
+     */
+    private static final Logger LOG = Logger.getLogger(MockWebServer.class.getName());
+
+    static {
+        LOG.setLevel(Level.WARNING);
+    }
+
+    private final MockWebServer mServer = new MockWebServer();
+    private final byte[] mSearchResults;
+    private final byte[] mMovieDetails;
+    private final byte[] mSeriesDetails;
+    private final byte[] mError;
+    private final String mTitleSearchUrl;
+    private final String mIdSearchUrl;
+    private volatile long mDelayMs;
+
+    OmdbMockServer() throws IOException {
+        mSearchResults = Fixtures.readBytes(Fixtures.SEARCH_RESULTS);
+        mMovieDetails = Fixtures.readBytes(Fixtures.MOVIE_DETAILS);
+        mSeriesDetails = Fixtures.readBytes(Fixtures.SERIES_DETAILS);
+        mError = Fixtures.readBytes(Fixtures.ERROR);
+        final String strings = new String(Fixtures.readFile(STRINGS), "UTF-8");
+        mTitleSearchUrl = stringResource(strings, "title_search_url");
+        mIdSearchUrl = stringResource(strings, "id_search_url");
+        mServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return respond(request.getRequestUrl());
+            }
+        });
+        mServer.setServerSocketFactory(new NoDelayServerSocketFactory());
+    }
+
+    void start() throws IOException {
+        mServer.start();
+    }
+
+    void shutdown() throws IOException {
+        mServer.shutdown();
+    }
+
+    /**
+     * Delay every response body by the given time, as a slow network or server would.
+     */
+    void setDelay(long delayMs) {
+        mDelayMs = delayMs;
+    }
+
+    /**
+     * @return the base URL to format the app's request URLs with
+     */
+    String getBaseUrl() {
+        return mServer.url("/").toString();
+    }
+
+    /**
+     * @return the URL SearchTool requests for a page of title search results
+     */
+    String titleSearchUrl(String keyword, int page) {
+        return String.format(Locale.US, mTitleSearchUrl, getBaseUrl(), encode(keyword), page);
+    }
+
+    /**
+     * @return the URL SearchTool requests for the details of a title
+     */
+    String idSearchUrl(String imdbId) {
+        return String.format(Locale.US, mIdSearchUrl, getBaseUrl(), encode(imdbId));
+    }
+
+    int getRequestCount() {
+        return mServer.getRequestCount();
+    }
+
+    /**
+     * @return the next request the server received, in the order they arrived
+     */
+    RecordedRequest takeRequest() throws InterruptedException {
+        return mServer.takeRequest(1, TimeUnit.SECONDS);
+    }
+
+    private MockResponse respond(HttpUrl url) {
+        final String keyword = url.queryParameter("s");
+        final String imdbId = url.queryParameter("i");
+        if (SERVER_ERROR.equals(keyword)) {
+            return new MockResponse().setResponseCode(500);
+        }
+        final byte[] body;
+        if (keyword != null) {
+            final int page = parsePage(url.queryParameter("page"));
+            body = !NO_MATCH.equals(keyword) && page >= 1 && page <= PAGE_COUNT
+                    ? mSearchResults
+                    : mError;
+        } else if (MOVIE_ID.equals(imdbId)) {
+            body = mMovieDetails;
+        } else if (SERIES_ID.equals(imdbId)) {
+            body = mSeriesDetails;
+        } else {
+            body = mError;
+        }
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json; charset=utf-8")
+                .setBody(new Buffer().write(body))
+                .setBodyDelay(mDelayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private static int parsePage(String page) {
+        try {
+            return page != null ? Integer.parseInt(page) : 1;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static String encode(String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the format string of a quoted string resource, unescaped as aapt would
+     */
+    private static String stringResource(String strings, String name) throws IOException {
+        final Matcher matcher = Pattern.compile(
+                "<string name=\"" + name + "\">\"([^\"]*)\"</string>").matcher(strings);
+        if (!matcher.find()) {
+            throw new IOException("no string resource " + name + " in " + STRINGS);
+        }
+        return matcher.group(1).replace("&amp;", "&");
+    }
+
+    /**
+     * MockWebServer writes the headers and the body of a response separately. With Nagle's
+     * algorithm on, the body then waits for the client's delayed acknowledgement of the headers,
+     * which adds 40 ms to every request on Linux; web servers turn it off, and so does this one.
+     */
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    final Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address)
+                throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.toolbox.HttpStack;
+import com.android.volley.toolbox.HurlStack;
+import com.jasontoradler.moviesearch.Benchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Latency and throughput of title searches over the app's network stack against
+ * {@link OmdbMockServer}, from as many threads as Volley has network dispatchers, with
+ * {@link OkHttpStack} and with the HurlStack it replaced. Each request
+ * includes parsing, as on a dispatcher. The server answers either at once, which measures the
+ * overhead of the client, or after a delay like that of a real network.
+ */
+@Category(Benchmark.class)
+public class OmdbNetworkBenchmark {
+
+    private static final int DISPATCHERS = 4;
+    private static final int WARM_UP_REQUESTS = 200;
+    private static final int REQUESTS = 1000;
+    private static final long[] DELAYS_MS = {0, 20};
+
+    private final OmdbMockServer mServer;
+    private ExecutorService mDispatchers;
+
+    public OmdbNetworkBenchmark() throws Exception {
+        mServer = new OmdbMockServer();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mServer.start();
+        mDispatchers = Executors.newFixedThreadPool(DISPATCHERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDispatchers.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void titleSearches() throws Exception {
+        for (long delayMs : DELAYS_MS) {
+            measure("OkHttpStack", new OkHttpStack(), delayMs);
+            measure("HurlStack", new HurlStack(), delayMs);
+        }
+    }
+
+    private void measure(String name, HttpStack stack, long delayMs) throws Exception {
+        mServer.setDelay(delayMs);
+        final TimingNetwork network = new TimingNetwork(stack);
+        run(network, WARM_UP_REQUESTS, new Histogram("warm-up", "us"));
+
+        final Histogram latency = new Histogram("latency", "us");
+        final long start = System.nanoTime();
+        run(network, REQUESTS, latency);
+        final double seconds = (System.nanoTime() - start) / 1e9;
+
+        Benchmark.Timer.report("%s, %d ms server delay: %.0f requests/s, %s",
+                name, delayMs, REQUESTS / seconds, latency);
+    }
+
+    private void run(final TimingNetwork network, int requests, final Histogram latency)
+            throws Exception {
+        final List<Future<Void>> results = new ArrayList<>(requests);
+        for (int i = 0; i < requests; i++) {
+            final int page = 1 + i % OmdbMockServer.PAGE_COUNT;
+            results.add(mDispatchers.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    final long start = System.nanoTime();
+                    OmdbNetworkTest.fetch(network, new TitleSearchRequest(
+                            mServer.titleSearchUrl("red dragon", page), null, null, null, null));
+                    latency.record((System.nanoTime() - start) / 1000);
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> result : results) {
+            // rethrows any failure
+            result.get();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.android.volley.Network;
+import com.android.volley.NetworkResponse;
+import com.android.volley.Response;
+import com.android.volley.ServerError;
+import com.android.volley.VolleyError;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the OMDb requests over the app's network stack against {@link OmdbMockServer}, the way a
+ * network dispatcher does: {@link TimingNetwork} on {@link OkHttpStack}, then the request's own
+ * parsing.
+ */
+public class OmdbNetworkTest {
+
+    private static final String KEYWORD = "red dragon";
+    /**
+     * Volley's default number of network dispatchers.
+     */
+    private static final int DISPATCHERS = 4;
+
+    private final OmdbMockServer mServer;
+    private final TimingNetwork mNetwork = new TimingNetwork(new OkHttpStack());
+    private ExecutorService mDispatchers;
+
+    public OmdbNetworkTest() throws Exception {
+        mServer = new OmdbMockServer();
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mServer.start();
+        mDispatchers = Executors.newFixedThreadPool(DISPATCHERS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        mDispatchers.shutdownNow();
+        mServer.shutdown();
+    }
+
+    @Test
+    public void titleSearch_firstPageThenTheRestConcurrently() throws Exception {
+        final SearchResults first = fetch(titleSearch(KEYWORD, 1));
+        assertTrue(TitleSearchRequest.isSuccessful(first));
+        assertEquals(57, first.totalResults);
+        assertEquals(8, first.Search.size());
+        assertEquals("Red Dragon", first.Search.get(0).Title);
+
+        // like PagePrefetcher, request a window of the following pages at once
+        final List<Future<SearchResults>> pages = new ArrayList<>();
+        for (int page = 2; page <= OmdbMockServer.PAGE_COUNT; page++) {
+            pages.add(mDispatchers.submit(fetchLater(titleSearch(KEYWORD, page))));
+        }
+        for (Future<SearchResults> page : pages) {
+            final SearchResults searchResults = page.get();
+            assertTrue(TitleSearchRequest.isSuccessful(searchResults));
+            assertEquals(8, searchResults.Search.size());
+        }
+
+        assertEquals(OmdbMockServer.PAGE_COUNT, mServer.getRequestCount());
+        final Set<String> requestedPages = new HashSet<>();
+        for (int i = 0; i < OmdbMockServer.PAGE_COUNT; i++) {
+            final HttpUrl url = mServer.takeRequest().getRequestUrl();
+            assertEquals(KEYWORD, url.queryParameter("s"));
+            assertNotNull(url.queryParameter("apikey"));
+            requestedPages.add(url.queryParameter("page"));
+        }
+        assertEquals(OmdbMockServer.PAGE_COUNT, requestedPages.size());
+        assertTrue(requestedPages.contains(String.valueOf(OmdbMockServer.PAGE_COUNT)));
+    }
+
+    @Test
+    public void titleSearch_pastTheLastPage() throws Exception {
+        final SearchResults searchResults =
+                fetch(titleSearch(KEYWORD, OmdbMockServer.PAGE_COUNT + 1));
+
+        assertFalse(TitleSearchRequest.isSuccessful(searchResults));
+        assertEquals("False", searchResults.Response);
+        assertNull(searchResults.Search);
+    }
+
+    @Test
+    public void titleSearch_noMatch() throws Exception {
+        final SearchResults searchResults = fetch(titleSearch(OmdbMockServer.NO_MATCH, 1));
+
+        assertFalse(TitleSearchRequest.isSuccessful(searchResults));
+        assertEquals("Movie not found!", searchResults.Error);
+        assertEquals(OmdbMockServer.NO_MATCH,
+                mServer.takeRequest().getRequestUrl().queryParameter("s"));
+    }
+
+    @Test
+    public void titleSearch_serverError() throws Exception {
+        try {
+            mNetwork.performRequest(titleSearch(OmdbMockServer.SERVER_ERROR, 1));
+            fail("no error for an HTTP 500");
+        } catch (ServerError e) {
+            assertEquals(500, e.networkResponse.statusCode);
+        }
+    }
+
+    @Test
+    public void idSearch() throws Exception {
+        final MovieDetails movie = fetch(idSearch(OmdbMockServer.MOVIE_ID));
+        final MovieDetails series = fetch(idSearch(OmdbMockServer.SERIES_ID));
+        final MovieDetails unknown = fetch(idSearch("tt0000000"));
+
+        assertTrue(IdSearchRequest.isSuccessful(movie));
+        assertEquals("Red Dragon", movie.title);
+        assertEquals(3, movie.ratings.size());
+        assertTrue(IdSearchRequest.isSuccessful(series));
+        assertEquals(2011, series.startYear);
+        assertFalse(IdSearchRequest.isSuccessful(unknown));
+        final RecordedRequest request = mServer.takeRequest();
+        assertEquals(OmdbMockServer.MOVIE_ID, request.getRequestUrl().queryParameter("i"));
+        assertEquals("GET", request.getMethod());
+    }
+
+    private TitleSearchRequest titleSearch(String keyword, int page) {
+        return new TitleSearchRequest(mServer.titleSearchUrl(keyword, page), null, null, null,
+                null);
+    }
+
+    private IdSearchRequest idSearch(String imdbId) {
+        return new IdSearchRequest(mServer.idSearchUrl(imdbId), null, null, null, null);
+    }
+
+    private <T> Callable<T> fetchLater(final OmdbRequest<T> request) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                return fetch(request);
+            }
+        };
+    }
+
+    /**
+     * @return the parsed response, as a network dispatcher would deliver it
+     */
+    private <T> T fetch(OmdbRequest<T> request) throws VolleyError {
+        return fetch(mNetwork, request);
+    }
+
+    static <T> T fetch(Network network, OmdbRequest<T> request) throws VolleyError {
+        final NetworkResponse networkResponse = network.performRequest(request);
+        final Response<T> response = request.parseNetworkResponse(networkResponse);
+        if (!response.isSuccess()) {
+            throw response.error;
+        }
+        return response.result;
+    }
+}
@@ -0,0 +1,85 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jasontoradler.moviesearch.Benchmark;
+import com.jasontoradler.moviesearch.Fixtures;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parse time of the streaming parser compared with the ObjectMapper code it replaced: data
+ * binding for search results, and a tree whose text values were collected for details.
+ */
+@Category(Benchmark.class)
+public class OmdbParserBenchmark {
+
+    private static final int RUNS = 2000;
+
+    private final ObjectMapper mMapper = new ObjectMapper();
+
+    @Test
+    public void searchResults() throws Exception {
+        final byte[] json = Fixtures.readBytes(Fixtures.SEARCH_RESULTS);
+
+        report(Fixtures.SEARCH_RESULTS, json, Benchmark.Timer.microsPerRun(RUNS,
+                new Benchmark.Operation() {
+                    @Override
+                    public void run() throws Exception {
+                        OmdbParser.parseSearchResults(json);
+                    }
+                },
+                new Benchmark.Operation() {
+                    @Override
+                    public void run() throws Exception {
+                        mMapper.readValue(json, SearchResults.class);
+                    }
+                }));
+    }
+
+    @Test
+    public void movieDetails() throws Exception {
+        for (String fixture : new String[]{Fixtures.MOVIE_DETAILS, Fixtures.SERIES_DETAILS}) {
+            final byte[] json = Fixtures.readBytes(fixture);
+
+            report(fixture, json, Benchmark.Timer.microsPerRun(RUNS,
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() throws Exception {
+                            OmdbParser.parseMovieDetails(json);
+                        }
+                    },
+                    new Benchmark.Operation() {
+                        @Override
+                        public void run() throws Exception {
+                            readTextFields(json);
+                        }
+                    }));
+        }
+    }
+
+    private List<String> readTextFields(byte[] json) throws Exception {
+        final List<String> fields = new ArrayList<>();
+        final Iterator<Map.Entry<String, JsonNode>> entries = mMapper.readTree(json).fields();
+        while (entries.hasNext()) {
+            final Map.Entry<String, JsonNode> entry = entries.next();
+            if (entry.getValue().isTextual()) {
+                fields.add(entry.getKey());
+                fields.add(entry.getValue().asText());
+            }
+        }
+        return fields;
+    }
+
+    private static void report(String fixture, byte[] json, double[] micros) {
+        Benchmark.Timer.report("%s (%d bytes): OmdbParser %.1f us, ObjectMapper %.1f us",
+                fixture, json.length, micros[0], micros[1]);
+    }
+}
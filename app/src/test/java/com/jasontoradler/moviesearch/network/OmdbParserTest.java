@@ -0,0 +1,220 @@
+package com.jasontoradler.moviesearch.network;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jasontoradler.moviesearch.Fixtures;
+import com.jasontoradler.moviesearch.data.MovieDetails;
+import com.jasontoradler.moviesearch.data.SearchItem;
+import com.jasontoradler.moviesearch.data.SearchResults;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Pins the streaming parser to the output of the ObjectMapper code it replaced.
+ */
+public class OmdbParserTest {
+
+    private final ObjectMapper mMapper = new ObjectMapper();
+
+    @Test
+    public void parseSearchResults_matchesObjectMapper() throws IOException {
+        final String json = Fixtures.readString(Fixtures.SEARCH_RESULTS);
+        final SearchResults expected = mMapper.readValue(json, SearchResults.class);
+
+        assertSearchResultsEqual(expected, OmdbParser.parseSearchResults(json));
+        assertSearchResultsEqual(expected,
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS)));
+    }
+
+    @Test
+    public void parseSearchResults_keepsNonAsciiAndEscapedText() throws IOException {
+        final SearchResults searchResults =
+                OmdbParser.parseSearchResults(Fixtures.readBytes(Fixtures.SEARCH_RESULTS));
+
+        assertEquals("2011\u20132014", searchResults.Search.get(3).Year);
+        assertEquals("Red Dragon \"Director's Cut\"", searchResults.Search.get(6).Title);
+        assertEquals("Cr\u00f4nica do Drag\u00e3o Vermelho", searchResults.Search.get(7).Title);
+    }
+
+    @Test
+    public void parseSearchResults_errorResponse() throws IOException {
+        final String json = Fixtures.readString(Fixtures.ERROR);
+        final SearchResults expected = mMapper.readValue(json, SearchResults.class);
+        final SearchResults actual = OmdbParser.parseSearchResults(json);
+
+        assertSearchResultsEqual(expected, actual);
+        // ignored by the ObjectMapper, but the error is worth logging
+        assertEquals("Movie not found!", actual.Error);
+    }
+
+    @Test
+    public void parseSearchResults_missingFields() throws IOException {
+        final SearchResults searchResults =
+                OmdbParser.parseSearchResults("{\"Search\":[{\"Title\":\"Red Dragon\"}]}");
+
+        assertNull(searchResults.Response);
+        assertEquals(0, searchResults.totalResults);
+        assertEquals(1, searchResults.Search.size());
+        final SearchItem item = searchResults.Search.get(0);
+        assertEquals("Red Dragon", item.Title);
+        assertNull(item.Year);
+        assertNull(item.imdbID);
+        assertNull(item.Type);
+        assertNull(item.Poster);
+    }
+
+    @Test(expected = IOException.class)
+    public void parseSearchResults_rejectsNonObject() throws IOException {
+        OmdbParser.parseSearchResults("[]");
+    }
+
+    @Test
+    public void parseMovieDetails_matchesObjectMapperTree() throws IOException {
+        for (String fixture : new String[]{
+                Fixtures.MOVIE_DETAILS, Fixtures.SERIES_DETAILS, Fixtures.ERROR}) {
+            final String json = Fixtures.readString(fixture);
+            assertDetailsMatchTree(fixture, json, OmdbParser.parseMovieDetails(json));
+            assertDetailsMatchTree(fixture, json,
+                    OmdbParser.parseMovieDetails(Fixtures.readBytes(fixture)));
+        }
+    }
+
+    @Test
+    public void parseMovieDetails_readsRatings() throws IOException {
+        final MovieDetails movieDetails =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS));
+
+        assertEquals(3, movieDetails.ratings.size());
+        assertRating("Internet Movie Database", "7.2/10", 72, movieDetails.ratings.get(0));
+        assertRating("Rotten Tomatoes", "69%", 69, movieDetails.ratings.get(1));
+        assertRating("Metacritic", "60/100", 60, movieDetails.ratings.get(2));
+    }
+
+    @Test
+    public void parseMovieDetails_readsNumericFields() throws IOException {
+        final MovieDetails movieDetails =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.MOVIE_DETAILS));
+
+        assertEquals(2002, movieDetails.startYear);
+        assertEquals(2002, movieDetails.endYear);
+        assertEquals(124, movieDetails.runtimeMinutes);
+        assertEquals(60, movieDetails.metascore);
+        assertEquals(7.2f, movieDetails.imdbRating, 0);
+        assertEquals(211530, movieDetails.imdbVotes);
+    }
+
+    @Test
+    public void parseMovieDetails_notAvailableValuesAreUnknown() throws IOException {
+        final MovieDetails movieDetails =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.SERIES_DETAILS));
+
+        assertEquals(2011, movieDetails.startYear);
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.endYear);
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.runtimeMinutes);
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.metascore);
+        assertTrue(Float.isNaN(movieDetails.imdbRating));
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.imdbVotes);
+        assertTrue(movieDetails.ratings.isEmpty());
+        // the text is still shown as is
+        assertEquals("N/A", movieDetails.getField("Metascore"));
+        assertEquals("N/A", movieDetails.poster);
+    }
+
+    @Test
+    public void parseMovieDetails_errorResponse() throws IOException {
+        final MovieDetails movieDetails =
+                OmdbParser.parseMovieDetails(Fixtures.readBytes(Fixtures.ERROR));
+
+        assertEquals("False", movieDetails.response);
+        assertNull(movieDetails.title);
+        assertEquals(1, movieDetails.getFieldCount());
+        assertEquals("Movie not found!", movieDetails.getField("Error"));
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.startYear);
+    }
+
+    @Test
+    public void parseMovieDetails_skipsNonStringValues() throws IOException {
+        final MovieDetails movieDetails = OmdbParser.parseMovieDetails(
+                "{\"Title\":\"Red Dragon\",\"Year\":2002,\"Extra\":{\"Year\":\"1999\"},"
+                        + "\"Ratings\":null,\"Rated\":\"R\"}");
+
+        assertEquals("Red Dragon", movieDetails.title);
+        assertEquals(MovieDetails.UNKNOWN, movieDetails.startYear);
+        assertTrue(movieDetails.ratings.isEmpty());
+        assertEquals(1, movieDetails.getFieldCount());
+        assertEquals("R", movieDetails.getField("Rated"));
+    }
+
+    private static void assertSearchResultsEqual(SearchResults expected, SearchResults actual) {
+        assertEquals(expected.Response, actual.Response);
+        assertEquals(expected.totalResults, actual.totalResults);
+        if (expected.Search == null) {
+            assertNull(actual.Search);
+            return;
+        }
+        assertEquals(expected.Search.size(), actual.Search.size());
+        for (int i = 0; i < expected.Search.size(); i++) {
+            final SearchItem expectedItem = expected.Search.get(i);
+            final SearchItem actualItem = actual.Search.get(i);
+            assertEquals(expectedItem.Title, actualItem.Title);
+            assertEquals(expectedItem.Year, actualItem.Year);
+            assertEquals(expectedItem.imdbID, actualItem.imdbID);
+            assertEquals(expectedItem.Type, actualItem.Type);
+            assertEquals(expectedItem.Poster, actualItem.Poster);
+        }
+    }
+
+    /**
+     * Compare with what the ObjectMapper tree code read: every String value, with "Response",
+     * "Poster" and "Title" in their own fields and the rest in document order.
+     */
+    private void assertDetailsMatchTree(String fixture, String json, MovieDetails actual)
+            throws IOException {
+        String response = null;
+        String poster = null;
+        String title = null;
+        final List<String> fields = new ArrayList<>();
+        final Iterator<Map.Entry<String, JsonNode>> entries = mMapper.readTree(json).fields();
+        while (entries.hasNext()) {
+            final Map.Entry<String, JsonNode> entry = entries.next();
+            if (entry.getValue().isTextual()) {
+                final String value = entry.getValue().asText();
+                if (entry.getKey().equalsIgnoreCase("response")) {
+                    response = value;
+                } else if (entry.getKey().equalsIgnoreCase("poster")) {
+                    poster = value;
+                } else if (entry.getKey().equalsIgnoreCase("title")) {
+                    title = value;
+                } else {
+                    fields.add(entry.getKey() + "=" + value);
+                }
+            }
+        }
+
+        assertEquals(fixture, response, actual.response);
+        assertEquals(fixture, poster, actual.poster);
+        assertEquals(fixture, title, actual.title);
+        final List<String> actualFields = new ArrayList<>();
+        for (int i = 0; i < actual.getFieldCount(); i++) {
+            actualFields.add(actual.getFieldName(i) + "=" + actual.getFieldValue(i));
+        }
+        assertEquals(fixture, fields, actualFields);
+    }
+
+    private static void assertRating(String source, String value, int score,
+            MovieDetails.Rating rating) {
+        assertEquals(source, rating.source);
+        assertEquals(value, rating.value);
+        assertEquals(score, rating.getScore());
+    }
+}